@@ -0,0 +1,497 @@
+package me.zort.setuplib.processor;
+
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.*;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Generates {@code <Target>$SetupSchema} for every class with
+ * {@code @Setup} fields, so SetupLib neither reads the fields
+ * using reflection nor writes them using method handles.
+ * <p>
+ * Parts are collected the same way as at runtime. Targets are
+ * filled by direct field writes, records and targets without no
+ * args constructor by constructor call. Targets that cannot be
+ * bound from generated code, like with private fields, are
+ * reported and left to reflection.
+ */
+@SupportedAnnotationTypes({SetupProcessor.SETUP, SetupProcessor.NESTED})
+public class SetupProcessor extends AbstractProcessor {
+
+    static final String SETUP = "me.zort.setuplib.annotation.Setup";
+    static final String NESTED = "me.zort.setuplib.annotation.Nested";
+    private static final String SUFFIX = "$SetupSchema";
+    private static final String STEP = "me.zort.setuplib.SetupDefinition.Step";
+
+    private Elements elements;
+    private Types types;
+    private Messager messager;
+    // Package of currently generated schema.
+    private PackageElement origin;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        this.elements = processingEnv.getElementUtils();
+        this.types = processingEnv.getTypeUtils();
+        this.messager = processingEnv.getMessager();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Set<TypeElement> targets = new LinkedHashSet<>();
+        for(TypeElement annotation : annotations) {
+            for(Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if(element.getKind() == ElementKind.FIELD && element.getEnclosingElement() instanceof TypeElement) {
+                    targets.add((TypeElement) element.getEnclosingElement());
+                }
+            }
+        }
+        for(TypeElement target : targets) {
+            try {
+                generate(target);
+            } catch(Unsupported e) {
+                messager.printMessage(Diagnostic.Kind.NOTE, String.format("SetupLib: %s is bound using reflection, %s.", target.getQualifiedName(), e.getMessage()), target);
+            } catch(IOException e) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "SetupLib: Cannot write schema: " + e.getMessage(), target);
+            }
+        }
+        // Annotations are read at runtime too.
+        return false;
+    }
+
+    private void generate(TypeElement target) throws IOException, Unsupported {
+        if(!target.getTypeParameters().isEmpty()) {
+            throw new Unsupported("it has type parameters");
+        }
+        if(!target.getNestingKind().isNested() && target.getNestingKind() != NestingKind.TOP_LEVEL) {
+            throw new Unsupported("it's local or anonymous");
+        }
+        origin = elements.getPackageOf(target);
+        checkAccessible(target);
+
+        List<Part> parts = new ArrayList<>();
+        List<Group> groups = new ArrayList<>();
+        Set<TypeElement> path = new HashSet<>(Collections.singleton(target));
+        collect(target, "target", "", parts, groups, path);
+
+        String body;
+        if(target.getKind() == ElementKind.RECORD) {
+            if(!groups.isEmpty()) {
+                throw new Unsupported("it's a record with nested setups");
+            }
+            body = bindRecord(target, parts);
+        } else if(hasNoArgsConstructor(target)) {
+            body = bindFields(target, parts, groups);
+        } else if(groups.isEmpty()) {
+            body = bindConstructor(target, parts);
+        } else {
+            throw new Unsupported("it has nested setups but no no args constructor");
+        }
+
+        String packageName = elements.getPackageOf(target).getQualifiedName().toString();
+        String binaryName = elements.getBinaryName(target).toString();
+        String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)) + SUFFIX;
+        String targetName = target.getQualifiedName().toString();
+
+        StringBuilder source = new StringBuilder();
+        if(!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("@javax.annotation.processing.Generated(\"").append(SetupProcessor.class.getName()).append("\")\n");
+        source.append("public final class ").append(simpleName)
+                .append(" implements me.zort.setuplib.GeneratedSchema<").append(targetName).append("> {\n\n");
+        source.append("    private static final java.util.List<").append(STEP).append("> STEPS = java.util.List.of(");
+        for(int i = 0; i < parts.size(); i++) {
+            source.append(i == 0 ? "\n" : ",\n").append("            ").append(step(parts.get(i)));
+        }
+        source.append(");\n\n");
+        source.append("    @Override\n");
+        source.append("    public Class<").append(targetName).append("> getTarget() {\n");
+        source.append("        return ").append(targetName).append(".class;\n");
+        source.append("    }\n\n");
+        source.append("    @Override\n");
+        source.append("    public java.util.List<").append(STEP).append("> getSteps() {\n");
+        source.append("        return STEPS;\n");
+        source.append("    }\n\n");
+        source.append("    @Override\n");
+        source.append("    @SuppressWarnings(\"unchecked\")\n");
+        source.append("    public ").append(targetName).append(" bind(me.zort.setuplib.ValueSlots values) {\n");
+        source.append(body);
+        source.append("    }\n\n");
+        source.append("}\n");
+
+        String fileName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+        try(Writer writer = processingEnv.getFiler().createSourceFile(fileName, target).openWriter()) {
+            writer.write(source.toString());
+        }
+    }
+
+    /**
+     * Collects parts in the same order as runtime does,
+     * nested setups are flattened in place of their field.
+     */
+    private void collect(TypeElement type, String access, String prefix, List<Part> parts, List<Group> groups, Set<TypeElement> path) throws Unsupported {
+        for(VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if(field.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+            String name = field.getSimpleName().toString();
+            if(annotation(field, NESTED) != null) {
+                if(field.asType().getKind() != TypeKind.DECLARED) {
+                    throw new Unsupported("nested setup " + name + " is not a class");
+                }
+                TypeElement nested = (TypeElement) types.asElement(field.asType());
+                if(!path.add(nested)) {
+                    // Reported by runtime.
+                    throw new Unsupported("nested setup " + nested.getQualifiedName() + " contains itself");
+                }
+                checkAccessible(nested);
+                if(!hasNoArgsConstructor(nested)) {
+                    throw new Unsupported("nested setup " + nested.getQualifiedName() + " has no no args constructor");
+                }
+                checkWritable(field);
+                groups.add(new Group(access + "." + name, nested.getQualifiedName().toString()));
+                collect(nested, access + "." + name, prefix + name + ".", parts, groups, path);
+                path.remove(nested);
+                continue;
+            }
+            AnnotationMirror setup = annotation(field, SETUP);
+            if(setup != null) {
+                parts.add(new Part(prefix + name, access + "." + name, field, setup));
+            }
+        }
+    }
+
+    private String bindFields(TypeElement target, List<Part> parts, List<Group> groups) throws Unsupported {
+        StringBuilder body = new StringBuilder();
+        body.append("        ").append(target.getQualifiedName()).append(" target = new ").append(target.getQualifiedName()).append("();\n");
+        for(Group group : groups) {
+            body.append("        ").append(group.access).append(" = new ").append(group.type).append("();\n");
+        }
+        for(int i = 0; i < parts.size(); i++) {
+            Part part = parts.get(i);
+            checkWritable(part.field);
+            body.append("        ").append(part.access).append(" = ").append(value(part.field.asType(), i)).append(";\n");
+        }
+        body.append("        return target;\n");
+        return body.toString();
+    }
+
+    private String bindRecord(TypeElement target, List<Part> parts) {
+        List<String> arguments = new ArrayList<>();
+        for(RecordComponentElement component : target.getRecordComponents()) {
+            int index = indexOf(parts, component.getSimpleName().toString());
+            // Components not part of the setup get default value.
+            arguments.add(index != -1
+                    ? value(component.asType(), index)
+                    : defaultValue(component.asType()));
+        }
+        return "        return new " + target.getQualifiedName() + "(" + String.join(", ", arguments) + ");\n";
+    }
+
+    private String bindConstructor(TypeElement target, List<Part> parts) throws Unsupported {
+        for(ExecutableElement constructor : ElementFilter.constructorsIn(target.getEnclosedElements())) {
+            List<? extends VariableElement> parameters = constructor.getParameters();
+            if(constructor.getModifiers().contains(Modifier.PRIVATE) || parameters.size() != parts.size()) {
+                continue;
+            }
+            boolean matches = true;
+            for(int i = 0; i < parameters.size() && matches; i++) {
+                matches = types.isSameType(types.erasure(parameters.get(i).asType()), types.erasure(parts.get(i).field.asType()));
+            }
+            if(matches) {
+                List<String> arguments = new ArrayList<>();
+                for(int i = 0; i < parts.size(); i++) {
+                    arguments.add(value(parts.get(i).field.asType(), i));
+                }
+                return "        return new " + target.getQualifiedName() + "(" + String.join(", ", arguments) + ");\n";
+            }
+        }
+        throw new Unsupported("it has neither no args constructor nor constructor matching setup parts");
+    }
+
+    /**
+     * Makes expression reading value of the part from slots.
+     * Primitives are read from raw slots without boxing.
+     */
+    private String value(TypeMirror type, int index) {
+        String raw = "values.getRaw(" + index + ")";
+        switch(type.getKind()) {
+            case INT:
+            case LONG:
+            case SHORT:
+            case BYTE:
+            case CHAR:
+                return "(" + type.getKind().name().toLowerCase(Locale.ROOT) + ") " + raw;
+            case BOOLEAN:
+                return raw + " != 0";
+            case DOUBLE:
+                return "Double.longBitsToDouble(" + raw + ")";
+            case FLOAT:
+                return "(float) Double.longBitsToDouble(" + raw + ")";
+            default:
+                return "(" + sourceName(type) + ") values.get(" + index + ")";
+        }
+    }
+
+    private static String defaultValue(TypeMirror type) {
+        switch(type.getKind()) {
+            case BOOLEAN:
+                return "false";
+            case INT:
+            case LONG:
+            case SHORT:
+            case BYTE:
+            case CHAR:
+            case DOUBLE:
+            case FLOAT:
+                return "(" + type.getKind().name().toLowerCase(Locale.ROOT) + ") 0";
+            default:
+                return "null";
+        }
+    }
+
+    private String step(Part part) {
+        Map<String, AnnotationValue> values = new HashMap<>();
+        for(Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : elements.getElementValuesWithDefaults(part.setup).entrySet()) {
+            values.put(entry.getKey().getSimpleName().toString(), entry.getValue());
+        }
+        TypeMirror type = part.field.asType();
+        return STEP + ".of("
+                + literal(part.name) + ", "
+                + literal(typeName(type)) + ", "
+                + classLiteral(type) + ", "
+                + elementClassLiteral(type) + ", "
+                + strings(values.get("message")) + ", "
+                + strings(values.get("invalidFormat")) + ", "
+                + literal(values.get("timeout").getValue()) + ", "
+                + literal(values.get("min").getValue()) + ", "
+                + literal(values.get("max").getValue()) + ", "
+                + literal(values.get("minLength").getValue()) + ", "
+                + literal(values.get("maxLength").getValue()) + ", "
+                + literal(values.get("regex").getValue()) + ", "
+                + strings(values.get("allowed")) + ", "
+                + classLiteral((TypeMirror) values.get("allowedEnum").getValue()) + ", "
+                + literal(values.get("terminator").getValue()) + ")";
+    }
+
+    private String strings(AnnotationValue value) {
+        List<String> literals = new ArrayList<>();
+        for(Object element : (List<?>) value.getValue()) {
+            literals.add(literal(((AnnotationValue) element).getValue()));
+        }
+        return "new String[] {" + String.join(", ", literals) + "}";
+    }
+
+    private String literal(Object value) {
+        if(value instanceof Double && ((Double) value).isInfinite()) {
+            return (Double) value > 0 ? "Double.POSITIVE_INFINITY" : "Double.NEGATIVE_INFINITY";
+        }
+        return elements.getConstantExpression(value);
+    }
+
+    private String classLiteral(TypeMirror type) {
+        return sourceName(types.erasure(type)) + ".class";
+    }
+
+    /**
+     * Element type of collection, when it's a plain class
+     * like runtime requires.
+     */
+    private String elementClassLiteral(TypeMirror type) {
+        if(type.getKind() == TypeKind.DECLARED) {
+            List<? extends TypeMirror> arguments = ((DeclaredType) type).getTypeArguments();
+            if(arguments.size() == 1
+                    && arguments.get(0).getKind() == TypeKind.DECLARED
+                    && ((DeclaredType) arguments.get(0)).getTypeArguments().isEmpty()) {
+                return classLiteral(arguments.get(0));
+            }
+        }
+        return "null";
+    }
+
+    /**
+     * Name of the type in source code, without
+     * type annotations.
+     */
+    private String sourceName(TypeMirror type) {
+        switch(type.getKind()) {
+            case DECLARED:
+                DeclaredType declared = (DeclaredType) type;
+                String name = ((TypeElement) declared.asElement()).getQualifiedName().toString();
+                if(declared.getTypeArguments().isEmpty()) {
+                    return name;
+                }
+                List<String> arguments = new ArrayList<>();
+                for(TypeMirror argument : declared.getTypeArguments()) {
+                    arguments.add(sourceName(argument));
+                }
+                return name + "<" + String.join(", ", arguments) + ">";
+            case ARRAY:
+                return sourceName(((ArrayType) type).getComponentType()) + "[]";
+            case WILDCARD:
+                WildcardType wildcard = (WildcardType) type;
+                if(wildcard.getExtendsBound() != null) {
+                    return "? extends " + sourceName(wildcard.getExtendsBound());
+                } else if(wildcard.getSuperBound() != null) {
+                    return "? super " + sourceName(wildcard.getSuperBound());
+                }
+                return "?";
+            default:
+                return type.getKind().isPrimitive()
+                        ? type.getKind().name().toLowerCase(Locale.ROOT)
+                        : types.erasure(type).toString();
+        }
+    }
+
+    /**
+     * Name of the type like {@link java.lang.reflect.Type#getTypeName()}
+     * of the field at runtime, so fingerprints of generated and
+     * reflected schemas are equal.
+     */
+    private String typeName(TypeMirror type) {
+        switch(type.getKind()) {
+            case DECLARED:
+                DeclaredType declared = (DeclaredType) type;
+                String name = elements.getBinaryName((TypeElement) declared.asElement()).toString();
+                if(declared.getTypeArguments().isEmpty()) {
+                    return name;
+                }
+                List<String> arguments = new ArrayList<>();
+                for(TypeMirror argument : declared.getTypeArguments()) {
+                    arguments.add(typeName(argument));
+                }
+                return name + "<" + String.join(", ", arguments) + ">";
+            case ARRAY:
+                return typeName(((ArrayType) type).getComponentType()) + "[]";
+            case WILDCARD:
+                WildcardType wildcard = (WildcardType) type;
+                if(wildcard.getExtendsBound() != null) {
+                    return "? extends " + typeName(wildcard.getExtendsBound());
+                } else if(wildcard.getSuperBound() != null) {
+                    return "? super " + typeName(wildcard.getSuperBound());
+                }
+                return "?";
+            default:
+                return sourceName(type);
+        }
+    }
+
+    private void checkAccessible(TypeElement type) throws Unsupported {
+        for(Element element = type; element instanceof TypeElement; element = element.getEnclosingElement()) {
+            if(!isAccessible(element)) {
+                throw new Unsupported(((TypeElement) element).getQualifiedName() + " is not accessible");
+            }
+        }
+    }
+
+    private void checkWritable(VariableElement field) throws Unsupported {
+        if(!isAccessible(field) || field.getModifiers().contains(Modifier.FINAL)) {
+            throw new Unsupported("field " + field.getSimpleName() + " is not accessible or final");
+        }
+    }
+
+    private boolean hasNoArgsConstructor(TypeElement type) {
+        if(type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT)) {
+            return false;
+        }
+        if(type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC)) {
+            // Inner class needs its outer instance.
+            return false;
+        }
+        for(ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if(constructor.getParameters().isEmpty() && isAccessible(constructor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if generated schema can access the element
+     * from package of the target.
+     */
+    private boolean isAccessible(Element element) {
+        Set<Modifier> modifiers = element.getModifiers();
+        if(modifiers.contains(Modifier.PRIVATE)) {
+            return false;
+        }
+        return modifiers.contains(Modifier.PUBLIC) || elements.getPackageOf(element).equals(origin);
+    }
+
+    private static int indexOf(List<Part> parts, String name) {
+        for(int i = 0; i < parts.size(); i++) {
+            if(parts.get(i).name.equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static AnnotationMirror annotation(Element element, String name) {
+        for(AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if(((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(name)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private static final class Part {
+
+        // Name like at runtime, path for nested parts.
+        private final String name;
+        // Expression the value is assigned to.
+        private final String access;
+        private final VariableElement field;
+        private final AnnotationMirror setup;
+
+        private Part(String name, String access, VariableElement field, AnnotationMirror setup) {
+            this.name = name;
+            this.access = access;
+            this.field = field;
+            this.setup = setup;
+        }
+
+    }
+
+    private static final class Group {
+
+        private final String access;
+        private final String type;
+
+        private Group(String access, String type) {
+            this.access = access;
+            this.type = type;
+        }
+
+    }
+
+    /**
+     * Target cannot be bound by generated code.
+     */
+    private static final class Unsupported extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        private Unsupported(String message) {
+            super(message, null, false, false);
+        }
+
+    }
+
+}
@@ -0,0 +1,60 @@
+package me.zort.setuplib;
+
+import me.zort.setuplib.exception.SetupException;
+import me.zort.setuplib.stub.BukkitStub;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures materialization of finished setup in
+ * {@link SetupSession#doNext(Player)} for targets with
+ * 5, 50 and 500 parts.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BindBenchmark {
+
+    @Param({"5", "50", "500"})
+    public int size;
+
+    private SetupSession<?> session;
+    private Player player;
+
+    @org.openjdk.jmh.annotations.Setup(Level.Trial)
+    public void setUp() throws ClassNotFoundException {
+        Class<?> target = Class.forName("me.zort.setuplib.Target" + size);
+        session = SetupLib.create(BukkitStub.plugin("BindBenchmark"), target).freeze().newSession();
+        player = BukkitStub.player(UUID.randomUUID());
+
+        SetupSchema<?> schema = session.getSchema();
+        for(int i = 0; i < schema.size(); i++) {
+            session.set(i, sample(schema.getPart(i).getType(), i));
+        }
+    }
+
+    @Benchmark
+    public boolean doNext() throws SetupException {
+        // All parts are filled, so each call materializes new target.
+        return session.doNext(player);
+    }
+
+    private static Object sample(RequiredType type, int i) {
+        switch(type) {
+            case INTEGER:
+                return i;
+            case LONG:
+                return (long) i;
+            case DOUBLE:
+                return i * 0.5;
+            case BOOLEAN:
+                return i % 2 == 0;
+            default:
+                return "value" + i;
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+package me.zort.setuplib;
+
+import me.zort.setuplib.stub.BukkitStub;
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.AsyncPlayerChatEvent;
+import org.bukkit.plugin.Plugin;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link SetupLibListener#onChat(AsyncPlayerChatEvent)}
+ * end to end, from dispatch to materialized result.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ChatBenchmark {
+
+    private SetupLibListener listener;
+    private SetupLib<Profile> setup;
+    private Player player;
+    private AsyncPlayerChatEvent[] answers;
+    private AsyncPlayerChatEvent invalidAnswer;
+
+    @org.openjdk.jmh.annotations.Setup(Level.Trial)
+    public void setUp() {
+        Plugin plugin = BukkitStub.plugin("ChatBenchmark");
+        listener = SetupLib.getListener();
+        setup = SetupLib.create(plugin, Profile.class);
+        player = BukkitStub.player(UUID.randomUUID());
+        answers = new AsyncPlayerChatEvent[] {
+                chat("Steve"),
+                chat("27"),
+                chat("4.5"),
+                chat("true")
+        };
+        invalidAnswer = chat("twenty seven");
+
+        // Player stays on the number part for invalid input.
+        setup.start(player);
+        listener.onChat(answers[0]);
+    }
+
+    @Benchmark
+    public CompletableFuture<Profile> completeSetup() {
+        CompletableFuture<Profile> future = setup.start(player);
+        for(AsyncPlayerChatEvent answer : answers) {
+            listener.onChat(answer);
+        }
+        return future;
+    }
+
+    @Benchmark
+    public AsyncPlayerChatEvent invalidInput() {
+        listener.onChat(invalidAnswer);
+        return invalidAnswer;
+    }
+
+    private AsyncPlayerChatEvent chat(String message) {
+        return new AsyncPlayerChatEvent(true, player, message, Collections.emptySet());
+    }
+
+}
@@ -0,0 +1,66 @@
+package me.zort.setuplib;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link RequiredType} parsing of valid and invalid
+ * inputs, compared to exception based JDK parsing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ParseBenchmark {
+
+    @Param({"INTEGER", "LONG", "DOUBLE"})
+    public RequiredType type;
+
+    private ValueSlots slots;
+    private String valid;
+    private String invalid;
+
+    @org.openjdk.jmh.annotations.Setup(Level.Trial)
+    public void setUp() {
+        slots = new ValueSlots(new RequiredType[] {type});
+        valid = type == RequiredType.DOUBLE ? "1234.5678" : "-1234567";
+        invalid = "12three4";
+    }
+
+    @Benchmark
+    public ParseResult valid() {
+        return type.parse(valid, slots, 0);
+    }
+
+    @Benchmark
+    public ParseResult invalid() {
+        return type.parse(invalid, slots, 0);
+    }
+
+    @Benchmark
+    public Object jdkValid() {
+        return jdkParse(valid);
+    }
+
+    @Benchmark
+    public Object jdkInvalid() {
+        return jdkParse(invalid);
+    }
+
+    private Object jdkParse(String input) {
+        // This is how parsing worked before result codes.
+        try {
+            switch(type) {
+                case INTEGER:
+                    return Integer.parseInt(input);
+                case LONG:
+                    return Long.parseLong(input);
+                default:
+                    return Double.parseDouble(input);
+            }
+        } catch(Exception e) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,19 @@
+package me.zort.setuplib;
+
+import me.zort.setuplib.annotation.Setup;
+
+/**
+ * Typical small setup used by benchmarks.
+ */
+public class Profile {
+
+    @Setup(message = {"&6&lProfile setup", "{messages.name}", "&7Type your answer in chat."})
+    private String name;
+    @Setup(message = "&7How old are you?", invalidFormat = "&cThat is not a number!")
+    private int age;
+    @Setup(message = "&7What is your rating?", invalidFormat = "&cThat is not a number!")
+    private double rating;
+    @Setup(message = "&7Do you want notifications?")
+    private boolean notifications;
+
+}
@@ -0,0 +1,54 @@
+package me.zort.setuplib;
+
+import me.zort.setuplib.stub.BukkitStub;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link SetupPart#send(Player)} with default and
+ * configuration message source, with and without decorator.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SendBenchmark {
+
+    @Param({"false", "true"})
+    public boolean config;
+    @Param({"false", "true"})
+    public boolean decorated;
+
+    private SetupPart<Profile> part;
+    private Player player;
+
+    @org.openjdk.jmh.annotations.Setup(Level.Trial)
+    public void setUp() {
+        SetupLib<Profile> setup = SetupLib.create(BukkitStub.plugin("SendBenchmark"), Profile.class);
+        if(config) {
+            YamlConfiguration yaml = new YamlConfiguration();
+            yaml.set("messages.name", Arrays.asList("&7What is your name?", "&8(3-16 characters)"));
+            setup.setConfigSource(yaml);
+        }
+        if(decorated) {
+            setup.addDecorator((part, message) -> {
+                String[] lines = Arrays.copyOf(message, message.length + 1);
+                lines[message.length] = "&8Part " + part.getName();
+                return lines;
+            });
+        }
+        part = setup.freeze().newSession().next();
+        player = BukkitStub.player(UUID.randomUUID());
+    }
+
+    @Benchmark
+    public SetupPart<Profile> send() {
+        part.send(player);
+        return part;
+    }
+
+}
@@ -0,0 +1,40 @@
+package me.zort.setuplib;
+
+import me.zort.setuplib.stub.BukkitStub;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link SetupLib#start(Player)} including creation
+ * of the session and sending the first prompt.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StartBenchmark {
+
+    private SetupLib<Profile> setup;
+    private Player player;
+
+    @org.openjdk.jmh.annotations.Setup(Level.Trial)
+    public void setUp() {
+        setup = SetupLib.create(BukkitStub.plugin("StartBenchmark"), Profile.class);
+        player = BukkitStub.player(UUID.randomUUID());
+    }
+
+    @Benchmark
+    public CompletableFuture<Profile> start() {
+        // Previous session of the player is replaced.
+        return setup.start(player);
+    }
+
+    @Benchmark
+    public SetupSession<Profile> sessionOnly() {
+        return setup.freeze().newSession();
+    }
+
+}
@@ -0,0 +1,35 @@
+package me.zort.setuplib.load;
+
+import me.zort.setuplib.annotation.Setup;
+
+/**
+ * Setup driven by simulated players.
+ */
+public class LoadProfile {
+
+    @Setup(message = {"&6&lProfile setup", "&7What is your name?"})
+    private String name;
+    @Setup(message = "&7How old are you?", invalidFormat = "&cThat is not a number!")
+    private int age;
+    @Setup(message = "&7What is your rating?", invalidFormat = "&cThat is not a number!")
+    private double rating;
+    @Setup(message = "&7Do you want notifications?")
+    private boolean notifications;
+
+    public String getName() {
+        return name;
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    public double getRating() {
+        return rating;
+    }
+
+    public boolean isNotifications() {
+        return notifications;
+    }
+
+}
@@ -0,0 +1,341 @@
+package me.zort.setuplib.load;
+
+import me.zort.setuplib.SetupLib;
+import me.zort.setuplib.SetupLibListener;
+import me.zort.setuplib.impl.DefaultSetupMetrics;
+import me.zort.setuplib.stub.BukkitStub;
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.AsyncPlayerChatEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.Plugin;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless load simulator driving many fake players
+ * through setups from multiple threads.
+ * <p>
+ * Every player is owned by one thread, so its messages
+ * arrive in order, except "contended" players whose messages
+ * are delivered by all threads at once. Reports throughput and
+ * per message latency of {@link SetupLibListener#onChat(AsyncPlayerChatEvent)}
+ * for each thread count, together with invariant violations
+ * that indicate races.
+ * <p>
+ * Options: --players, --threads (comma separated curve),
+ * --messages (per thread), --invalid, --quit, --cancel,
+ * --contended (ratios 0-1), --seed and --metrics (true to
+ * print summary of {@link DefaultSetupMetrics} after each run).
+ */
+public final class LoadSimulator {
+
+    private static final String CANCEL = "!cancel";
+    private static final int PARTS = 4;
+
+    private final int players;
+    private final int messages;
+    private final double invalidRatio;
+    private final double quitRatio;
+    private final double cancelRatio;
+    private final double contendedRatio;
+    private final long seed;
+    private final boolean metrics;
+
+    private LoadSimulator(Map<String, String> options) {
+        this.players = Integer.parseInt(options.getOrDefault("players", "1000"));
+        this.messages = Integer.parseInt(options.getOrDefault("messages", "200000"));
+        this.invalidRatio = Double.parseDouble(options.getOrDefault("invalid", "0.2"));
+        this.quitRatio = Double.parseDouble(options.getOrDefault("quit", "0.01"));
+        this.cancelRatio = Double.parseDouble(options.getOrDefault("cancel", "0.01"));
+        this.contendedRatio = Double.parseDouble(options.getOrDefault("contended", "0.05"));
+        this.seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        this.metrics = Boolean.parseBoolean(options.getOrDefault("metrics", "false"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for(int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        LoadSimulator simulator = new LoadSimulator(options);
+
+        System.out.printf("%8s %8s %10s %12s %10s %10s %10s %10s %10s %10s %10s%n",
+                "threads", "players", "messages", "msg/s", "p50 us", "p99 us", "p999 us", "max us",
+                "overrun", "wrong", "leaked");
+        int anomalies = 0;
+        for(String threads : options.getOrDefault("threads", "1,2,4,8,16").split(",")) {
+            anomalies += simulator.run(Integer.parseInt(threads.trim()));
+        }
+        if(anomalies > 0) {
+            System.out.println("Detected " + anomalies + " anomalies!");
+            System.exit(1);
+        }
+    }
+
+    private int run(int threads) throws Exception {
+        Plugin plugin = BukkitStub.plugin("LoadSimulator-" + threads);
+        SetupLibListener listener = SetupLib.getListener();
+        DefaultSetupMetrics runMetrics = metrics ? new DefaultSetupMetrics() : null;
+        SetupLib.setMetrics(runMetrics);
+        Run run = new Run(threads);
+        FakePlayer[] fakePlayers = new FakePlayer[players];
+        Random random = new Random(seed);
+        for(int i = 0; i < players; i++) {
+            fakePlayers[i] = new FakePlayer(i, random.nextDouble() < contendedRatio);
+            run.players.put(fakePlayers[i].player.getUniqueId(), fakePlayers[i]);
+        }
+
+        SetupLib<LoadProfile> setup = SetupLib.create(plugin, LoadProfile.class)
+                .onInput((part, player, input) -> {
+                    if(input.equals(CANCEL)) {
+                        part.cancel();
+                        return false;
+                    }
+                    return true;
+                })
+                .onFinish((player, result) -> run.finish(player, result))
+                .onError((player, err) -> run.errors.increment());
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for(int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                Random rnd = new Random(seed + thread);
+                List<FakePlayer> owned = new ArrayList<>();
+                List<FakePlayer> contended = new ArrayList<>();
+                for(FakePlayer player : fakePlayers) {
+                    if(player.contended) {
+                        contended.add(player);
+                    } else if(player.index % threads == thread) {
+                        owned.add(player);
+                    }
+                }
+                long[] latencies = run.latencies[thread];
+                ready.countDown();
+                go.await();
+                for(int i = 0; i < messages; i++) {
+                    FakePlayer player = !contended.isEmpty() && rnd.nextDouble() < contendedRatio
+                            ? contended.get(rnd.nextInt(contended.size()))
+                            : owned.get(rnd.nextInt(owned.size()));
+                    latencies[i] = drive(setup, listener, run, player, rnd);
+                }
+                return null;
+            }));
+        }
+        ready.await();
+        long start = System.nanoTime();
+        go.countDown();
+        for(Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+
+        int anomalies = run.verify(fakePlayers);
+        long[] all = run.merge();
+        Arrays.sort(all);
+        System.out.printf("%8d %8d %10d %12.0f %10.2f %10.2f %10.2f %10.2f %10d %10d %10d%n",
+                threads,
+                players,
+                all.length,
+                all.length / (elapsed / 1e9),
+                percentile(all, 0.5),
+                percentile(all, 0.99),
+                percentile(all, 0.999),
+                all[all.length - 1] / 1e3,
+                run.overruns,
+                run.wrongValues.sum(),
+                run.leaked.sum());
+        if(runMetrics != null) {
+            printMetrics(runMetrics);
+        }
+        SetupLib.clear(plugin);
+        return anomalies;
+    }
+
+    /**
+     * Moves the player one action further.
+     *
+     * @return Latency of the action in nanos.
+     */
+    private long drive(SetupLib<LoadProfile> setup, SetupLibListener listener, Run run, FakePlayer player, Random rnd) {
+        synchronized(player) {
+            if(!player.contended && player.step == -1) {
+                player.step = 0;
+                run.start(setup, player);
+            }
+        }
+        String message;
+        double roll = rnd.nextDouble();
+        if(roll < quitRatio) {
+            long start = System.nanoTime();
+            listener.onQuit(new PlayerQuitEvent(player.player, "quit"));
+            long latency = System.nanoTime() - start;
+            restart(player);
+            return latency;
+        } else if(roll < quitRatio + cancelRatio) {
+            message = CANCEL;
+            restart(player);
+        } else {
+            int step = player.contended ? rnd.nextInt(PARTS) : player.step;
+            boolean numeric = step == 1 || step == 2;
+            if(numeric && rnd.nextDouble() < invalidRatio) {
+                message = "not a number";
+            } else {
+                message = player.answer(step);
+                if(!player.contended && ++player.step == PARTS) {
+                    player.step = -1;
+                }
+            }
+            if(player.contended && rnd.nextInt(PARTS * 2) == 0) {
+                // Contended players are restarted by any thread.
+                run.start(setup, player);
+            }
+        }
+        AsyncPlayerChatEvent event = new AsyncPlayerChatEvent(true, player.player, message, Collections.emptySet());
+        long start = System.nanoTime();
+        listener.onChat(event);
+        long latency = System.nanoTime() - start;
+        if(!event.isCancelled() && player.starts.get() > 0 && !player.contended && player.step != -1) {
+            // Message of player in setup leaked to the chat.
+            run.leaked.increment();
+        }
+        return latency;
+    }
+
+    private static void printMetrics(DefaultSetupMetrics metrics) {
+        for(DefaultSetupMetrics.TargetSnapshot target : metrics.snapshot()) {
+            System.out.printf("  active=%d started=%d closed=%s errors=%d input p99=%.2fus handlers p99=%.2fus%n",
+                    target.getActiveSessions(),
+                    target.getStartedSessions(),
+                    target.getClosedSessions(),
+                    target.getErrors(),
+                    target.getInputLatency().getPercentile(99) / 1e3,
+                    target.getHandlerLatency().getPercentile(99) / 1e3);
+            target.getParts().forEach((name, part) -> System.out.printf("  %-8s inputs=%d invalid=%.1f%% step p50=%.2fus%n",
+                    name,
+                    part.getInputs(),
+                    part.getInvalidRate() * 100,
+                    part.getStepTime().getPercentile(50) / 1e3));
+        }
+    }
+
+    private static void restart(FakePlayer player) {
+        if(!player.contended) {
+            player.step = -1;
+        }
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+        return sorted[Math.max(index, 0)] / 1e3;
+    }
+
+    private final class Run {
+
+        private final long[][] latencies;
+        private final Map<UUID, FakePlayer> players;
+        private final Map<UUID, AtomicInteger> finishes;
+        private final LongAdder errors;
+        private final LongAdder wrongValues;
+        private final LongAdder leaked;
+        private final LongAdder finished;
+        private final LongAdder completed;
+        private long overruns;
+
+        private Run(int threads) {
+            this.latencies = new long[threads][messages];
+            this.players = new HashMap<>();
+            this.finishes = new ConcurrentHashMap<>();
+            this.errors = new LongAdder();
+            this.wrongValues = new LongAdder();
+            this.leaked = new LongAdder();
+            this.finished = new LongAdder();
+            this.completed = new LongAdder();
+        }
+
+        private void start(SetupLib<LoadProfile> setup, FakePlayer player) {
+            player.starts.incrementAndGet();
+            // Every session has its own future, which completes only once.
+            setup.start(player.player).thenRun(completed::increment);
+        }
+
+        private void finish(Player player, LoadProfile result) {
+            finished.increment();
+            finishes.computeIfAbsent(player.getUniqueId(), k -> new AtomicInteger()).incrementAndGet();
+            if(players.get(player.getUniqueId()).contended) {
+                // Answers of contended players are shuffled.
+                return;
+            }
+            if(!result.getName().equals(player.getName())
+                    || result.getAge() != FakePlayer.age(player.getName())) {
+                wrongValues.increment();
+            }
+        }
+
+        private int verify(FakePlayer[] players) {
+            // Finish handler fired more times than sessions finished.
+            overruns = finished.sum() - completed.sum();
+            for(FakePlayer player : players) {
+                AtomicInteger count = finishes.get(player.player.getUniqueId());
+                if(count != null && count.get() > player.starts.get()) {
+                    // Setup finished more times than it was started.
+                    overruns++;
+                }
+            }
+            return (int) (overruns + wrongValues.sum() + leaked.sum());
+        }
+
+        private long[] merge() {
+            long[] all = new long[latencies.length * messages];
+            for(int i = 0; i < latencies.length; i++) {
+                System.arraycopy(latencies[i], 0, all, i * messages, messages);
+            }
+            return all;
+        }
+
+    }
+
+    private static final class FakePlayer {
+
+        private final int index;
+        private final boolean contended;
+        private final Player player;
+        private final AtomicInteger starts;
+        // Next part to answer, -1 if not in setup.
+        private int step;
+
+        private FakePlayer(int index, boolean contended) {
+            this.index = index;
+            this.contended = contended;
+            this.player = BukkitStub.player(new UUID(0xC0FFEEL, index));
+            this.starts = new AtomicInteger();
+            this.step = -1;
+        }
+
+        private String answer(int step) {
+            switch(step) {
+                case 0:
+                    return player.getName();
+                case 1:
+                    return String.valueOf(age(player.getName()));
+                case 2:
+                    return String.valueOf(index / 10.0);
+                default:
+                    return String.valueOf(index % 2 == 0);
+            }
+        }
+
+        private static int age(String name) {
+            return Math.floorMod(name.hashCode(), 100);
+        }
+
+    }
+
+}
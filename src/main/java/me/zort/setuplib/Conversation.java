@@ -0,0 +1,188 @@
+package me.zort.setuplib;
+
+import com.google.common.primitives.Primitives;
+import lombok.Getter;
+import me.zort.setuplib.exception.SetupException;
+import me.zort.setuplib.exception.SetupTimeoutException;
+import me.zort.setuplib.util.EnumLookup;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Setup written as straight-line code.
+ * <p>
+ * Conversation runs on its own thread started by
+ * {@link ConversationRunner}, which waits in {@link #ask(String...)}
+ * until the player answers. Chat dispatcher only hands the
+ * input over, so it never blocks on the conversation.
+ */
+public final class Conversation {
+
+    // Inputs the conversation did not ask for yet, more are dropped.
+    private static final int MAX_QUEUED = 16;
+
+    @Getter
+    private final Player player;
+    private final ConversationRunner runner;
+    private final BlockingQueue<String> inbox;
+    private volatile Thread thread;
+    private volatile boolean cancelled;
+    @Nullable
+    private volatile SetupException closeReason;
+
+    protected Conversation(ConversationRunner runner, Player player) {
+        this.runner = runner;
+        this.player = player;
+        // Linked queue allocates only for queued inputs.
+        this.inbox = new LinkedBlockingQueue<>(MAX_QUEUED);
+    }
+
+    public interface Script<T> {
+        /**
+         * Runs the conversation.
+         *
+         * @param convo The conversation.
+         * @return Result the future is completed with.
+         * @throws Exception If the conversation failed.
+         */
+        T run(Conversation convo) throws Exception;
+    }
+
+    /**
+     * Sends the prompt and waits for next input of the player.
+     *
+     * @param prompt Lines of the prompt.
+     * @return The input.
+     * @throws SetupException If the player left, conversation
+     * was cancelled or the player did not answer in time.
+     */
+    public String ask(String... prompt) throws SetupException {
+        tell(prompt);
+        return receive();
+    }
+
+    /**
+     * Sends the prompt and waits until the player answers
+     * with value of provided type. Invalid answers are
+     * rejected with the invalid message.
+     *
+     * @param type Type of the value, {@link RequiredType} or enum.
+     * @param prompt The prompt.
+     * @param invalid Message sent on invalid answer.
+     * @return The value.
+     * @throws SetupException If the player left, conversation
+     * was cancelled or the player did not answer in time.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public <V> V ask(Class<V> type, String prompt, String invalid) throws SetupException {
+        Class<V> wrapper = Primitives.wrap(type);
+        RequiredType requiredType = RequiredType.valueOf(wrapper);
+        if(requiredType == null && !type.isEnum()) {
+            throw new IllegalArgumentException("Unsupported type " + type.getName());
+        }
+        tell(prompt);
+        while(true) {
+            String input = receive();
+            Object value = requiredType != null
+                    ? requiredType.parse(input)
+                    : EnumLookup.get((Class) type, input);
+            if(value != null) {
+                return wrapper.cast(value);
+            }
+            tell(invalid);
+        }
+    }
+
+    public void tell(String... lines) {
+        runner.send(player, lines);
+    }
+
+    private String receive() throws SetupException {
+        checkOpen();
+        long timeout = runner.getTimeout();
+        String input;
+        try {
+            input = timeout > 0
+                    ? inbox.poll(timeout, TimeUnit.NANOSECONDS)
+                    : inbox.take();
+        } catch(InterruptedException e) {
+            checkOpen();
+            throw new SetupException(null, e, "Conversation interrupted.");
+        }
+        if(input == null) {
+            checkOpen();
+            throw new SetupTimeoutException(null);
+        }
+        return input;
+    }
+
+    private void checkOpen() throws SetupException {
+        SetupException reason = closeReason;
+        if(reason != null) {
+            throw reason;
+        }
+    }
+
+    /**
+     * Hands input of the player over to the conversation.
+     * This never blocks.
+     *
+     * @param input The input.
+     * @return False if the input was dropped.
+     */
+    protected boolean offer(String input) {
+        return closeReason == null && inbox.offer(input);
+    }
+
+    /**
+     * Closes this conversation, waiting {@link #ask(String...)}
+     * throws provided reason.
+     *
+     * @param reason The reason.
+     * @return True if the conversation was closed by this call.
+     */
+    protected boolean close(SetupException reason) {
+        synchronized(this) {
+            if(closeReason != null) {
+                return false;
+            }
+            closeReason = reason;
+        }
+        Thread thread = this.thread;
+        if(thread != null) {
+            thread.interrupt();
+        }
+        return true;
+    }
+
+    /**
+     * Cancels this conversation, its future is cancelled
+     * once the script ends.
+     */
+    protected void cancel() {
+        cancelled = true;
+        close(new SetupException(null, "Setup cancelled."));
+    }
+
+    protected boolean isCancelled() {
+        return cancelled;
+    }
+
+    protected boolean isClosed() {
+        return closeReason != null;
+    }
+
+    protected Plugin getPlugin() {
+        return runner.getPlugin();
+    }
+
+    protected void setThread(Thread thread) {
+        this.thread = thread;
+    }
+
+}
@@ -0,0 +1,178 @@
+package me.zort.setuplib;
+
+import com.google.common.base.Preconditions;
+import lombok.AccessLevel;
+import lombok.Getter;
+import me.zort.setuplib.impl.ChatMessageSender;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Starts {@link Conversation}s, each parked on its own thread
+ * while waiting for input.
+ * <p>
+ * Virtual threads are used when the runtime has them, so
+ * waiting conversations cost only few KB. On older runtimes
+ * conversations run on daemon threads with small stacks.
+ */
+@Getter(AccessLevel.PROTECTED)
+public final class ConversationRunner {
+
+    private static final ThreadFactory DEFAULT_THREADS = defaultThreadFactory();
+
+    @Getter
+    private final Plugin plugin;
+    private ThreadFactory threadFactory;
+    private SetupLib.ErrorHandler<?> errorHandler;
+    private Executor completionExecutor;
+    // Time limit of each answer in nanos, 0 means no limit.
+    private long timeout;
+    private SetupLib.MessageSender messageSender;
+
+    protected ConversationRunner(Plugin plugin) {
+        this.plugin = plugin;
+        this.threadFactory = DEFAULT_THREADS;
+        this.errorHandler = (player, err) -> {};
+        this.completionExecutor = Runnable::run;
+        this.timeout = 0;
+        // Messages are already colorized.
+        this.messageSender = ChatMessageSender.INSTANCE;
+    }
+
+    public ConversationRunner onError(SetupLib.ErrorHandler<?> errorHandler) {
+        this.errorHandler = Preconditions.checkNotNull(errorHandler);
+        return this;
+    }
+
+    /**
+     * Sets executor the error handler and futures
+     * are completed on.
+     *
+     * @param executor The executor.
+     * @return This instance.
+     */
+    public ConversationRunner completeOn(Executor executor) {
+        this.completionExecutor = Preconditions.checkNotNull(executor);
+        return this;
+    }
+
+    public ConversationRunner completeSync() {
+        return completeOn(SetupLib.getListener().getMainThreadExecutor());
+    }
+
+    public ConversationRunner completeAsync() {
+        return completeOn(Runnable::run);
+    }
+
+    /**
+     * Sets how long each answer is waited for.
+     *
+     * @param timeout The timeout, 0 for no limit.
+     * @param unit Unit of the timeout.
+     * @return This instance.
+     */
+    public ConversationRunner setTimeout(long timeout, TimeUnit unit) {
+        Preconditions.checkArgument(timeout >= 0, "Timeout cannot be negative!");
+        this.timeout = unit.toNanos(timeout);
+        return this;
+    }
+
+    /**
+     * Sets factory of threads conversations run on.
+     *
+     * @param threadFactory The factory.
+     * @return This instance.
+     */
+    public ConversationRunner setThreadFactory(ThreadFactory threadFactory) {
+        this.threadFactory = Preconditions.checkNotNull(threadFactory);
+        return this;
+    }
+
+    public ConversationRunner setMessageSender(SetupLib.MessageSender messageSender) {
+        this.messageSender = Preconditions.checkNotNull(messageSender);
+        return this;
+    }
+
+    /**
+     * Starts conversation with the player. Setup or conversation
+     * the player is already in is cancelled.
+     *
+     * @param player The player.
+     * @param script The conversation.
+     * @return Future of the result. It's cancelled when the
+     * conversation is replaced by another one.
+     */
+    public <T> CompletableFuture<T> start(Player player, Conversation.Script<T> script) {
+        SetupLibListener listener = SetupLib.getListener();
+        Preconditions.checkState(listener.isAttached(plugin), "Plugin is not initialized!");
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Conversation convo = new Conversation(this, player);
+        Thread thread = threadFactory.newThread(() -> run(convo, script, future));
+        convo.setThread(thread);
+        listener.register(player.getUniqueId(), convo);
+        thread.start();
+        return future;
+    }
+
+    private <T> void run(Conversation convo, Conversation.Script<T> script, CompletableFuture<T> future) {
+        Player player = convo.getPlayer();
+        T result = null;
+        Throwable err = null;
+        try {
+            result = script.run(convo);
+        } catch(Throwable e) {
+            err = e;
+        } finally {
+            SetupLib.getListener().handleConversationClose(convo);
+        }
+
+        if(convo.isCancelled()) {
+            // Replaced by another setup, nobody waits for this one.
+            future.cancel(false);
+        } else if(err == null) {
+            T value = result;
+            completionExecutor.execute(() -> future.complete(value));
+        } else {
+            Throwable error = err;
+            completionExecutor.execute(() -> {
+                try {
+                    errorHandler.onError(player, error);
+                } catch(Exception e) {
+                    plugin.getLogger().log(Level.SEVERE, "Error handler of conversation failed!", e);
+                }
+                future.completeExceptionally(error);
+            });
+        }
+    }
+
+    protected void send(Player player, String[] lines) {
+        messageSender.send(player, MessageTemplates.colorize(lines));
+    }
+
+    private static ThreadFactory defaultThreadFactory() {
+        try {
+            // Thread.ofVirtual() is available since Java 21.
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "SetupLib-Conversation-", 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch(ReflectiveOperationException e) {
+            AtomicInteger ids = new AtomicInteger();
+            return task -> {
+                // Conversations only wait for input, small stack is enough.
+                Thread thread = new Thread(null, task, "SetupLib-Conversation-" + ids.getAndIncrement(), 256 * 1024);
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+package me.zort.setuplib;
+
+import com.google.common.collect.ImmutableSet;
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Index of registered custom types.
+ * <p>
+ * Most specific custom type of each field type is found
+ * by walking its hierarchy once and then cached, so
+ * resolution does not scan all registered types. Index
+ * is immutable, registering new custom type replaces it.
+ */
+public final class CustomTypeIndex {
+
+    private static final CustomTypeIndex EMPTY = new CustomTypeIndex(ImmutableSet.of());
+
+    @Getter
+    private final Set<Class<?>> types;
+    private final ClassValue<Optional<Class<?>>> resolved;
+
+    private CustomTypeIndex(Set<Class<?>> types) {
+        this.types = types;
+        this.resolved = new ClassValue<Optional<Class<?>>>() {
+            @Override
+            protected Optional<Class<?>> computeValue(Class<?> type) {
+                return Optional.ofNullable(walk(type));
+            }
+        };
+    }
+
+    /**
+     * Creates index of provided custom types.
+     *
+     * @param types Registered custom types.
+     * @return The index.
+     */
+    public static CustomTypeIndex of(Set<Class<?>> types) {
+        return types.isEmpty()
+                ? EMPTY
+                : new CustomTypeIndex(ImmutableSet.copyOf(types));
+    }
+
+    /**
+     * Finds most specific registered custom type
+     * values of provided type can be built with.
+     *
+     * @param type The type.
+     * @return The custom type or null if there is none.
+     */
+    @Nullable
+    public Class<?> resolve(Class<?> type) {
+        return !types.isEmpty()
+                ? resolved.get(type).orElse(null)
+                : null;
+    }
+
+    @Nullable
+    private Class<?> walk(Class<?> type) {
+        Class<?> found = null;
+        Deque<Class<?>> queue = new ArrayDeque<>();
+        Set<Class<?>> visited = new HashSet<>();
+        queue.add(type);
+        while(!queue.isEmpty()) {
+            Class<?> current = queue.poll();
+            if(!visited.add(current)) {
+                continue;
+            }
+            if(types.contains(current) && (found == null || found.isAssignableFrom(current))) {
+                // Most specific one wins.
+                found = current;
+            }
+            if(current.getSuperclass() != null) {
+                queue.add(current.getSuperclass());
+            }
+            Collections.addAll(queue, current.getInterfaces());
+        }
+        return found;
+    }
+
+}
@@ -0,0 +1,39 @@
+package me.zort.setuplib;
+
+import java.util.List;
+
+/**
+ * Schema of setup target generated at compile time.
+ * <p>
+ * Setup annotation processor generates class named
+ * {@code <Target>$SetupSchema} next to each target it can
+ * bind without reflection. {@link SetupSchema} uses it instead
+ * of reading fields and annotations of the target, and falls back
+ * to reflection when there is none.
+ *
+ * @param <T> Type of target.
+ */
+public interface GeneratedSchema<T> {
+
+    String SUFFIX = "$SetupSchema";
+
+    Class<T> getTarget();
+
+    /**
+     * Returns parts of the target in order, nested
+     * setups are flattened like in {@link SetupSchema}.
+     *
+     * @return The parts.
+     */
+    List<SetupDefinition.Step> getSteps();
+
+    /**
+     * Constructs target from values of the parts.
+     *
+     * @param values Values ordered as {@link #getSteps()}.
+     * @return The target.
+     * @throws Exception If target cannot be constructed.
+     */
+    T bind(ValueSlots values) throws Exception;
+
+}
@@ -0,0 +1,123 @@
+package me.zort.setuplib;
+
+import com.google.common.collect.ImmutableSet;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Input handlers of a setup. Frozen copy is shared
+ * by the template and its sessions.
+ * <p>
+ * Handlers can be scoped to some parts only. For each
+ * part, handlers are compiled into an array in order of
+ * registration, so every input runs only handlers of its
+ * part without any filtering.
+ *
+ * @param <T> Type of target.
+ */
+final class InputHandlers<T> {
+
+    @SuppressWarnings("rawtypes")
+    private static final SetupLib.InputHandler[] EMPTY = new SetupLib.InputHandler[0];
+
+    private volatile Entry<T>[] entries;
+    private volatile Compiled<T> compiled;
+
+    @SuppressWarnings("unchecked")
+    protected InputHandlers() {
+        this.entries = new Entry[0];
+        this.compiled = null;
+    }
+
+    private InputHandlers(InputHandlers<T> other) {
+        this.entries = other.entries;
+        this.compiled = other.compiled;
+    }
+
+    /**
+     * Returns copy of these handlers, not affected by
+     * handlers added later. Handlers are not copied.
+     *
+     * @return The copy.
+     */
+    protected InputHandlers<T> copy() {
+        return new InputHandlers<>(this);
+    }
+
+    /**
+     * Adds handler to the end of the chain.
+     *
+     * @param handler The handler.
+     * @param parts Names of parts the handler runs for, null for all parts.
+     */
+    protected synchronized void add(SetupLib.InputHandler<T> handler, @Nullable Set<String> parts) {
+        Entry<T>[] entries = Arrays.copyOf(this.entries, this.entries.length + 1);
+        entries[entries.length - 1] = new Entry<>(handler, parts != null ? ImmutableSet.copyOf(parts) : null);
+        this.entries = entries;
+        this.compiled = null;
+    }
+
+    /**
+     * Returns handlers of the part. Returned array is
+     * shared and must not be modified.
+     *
+     * @param schema Schema of the setup.
+     * @param part The part.
+     * @return The handlers.
+     */
+    protected SetupLib.InputHandler<T>[] get(SetupSchema<T> schema, SetupSchema.Part part) {
+        Compiled<T> compiled = this.compiled;
+        if(compiled == null || compiled.schema != schema) {
+            compiled = compile(schema);
+            this.compiled = compiled;
+        }
+        return compiled.handlers[part.getIndex()];
+    }
+
+    @SuppressWarnings("unchecked")
+    private Compiled<T> compile(SetupSchema<T> schema) {
+        Entry<T>[] entries = this.entries;
+        SetupLib.InputHandler<T>[][] handlers = new SetupLib.InputHandler[schema.size()][];
+        for(int i = 0; i < handlers.length; i++) {
+            String name = schema.getPart(i).getName();
+            List<SetupLib.InputHandler<T>> list = new ArrayList<>();
+            for(Entry<T> entry : entries) {
+                if(entry.parts == null || entry.parts.contains(name)) {
+                    list.add(entry.handler);
+                }
+            }
+            handlers[i] = list.isEmpty() ? EMPTY : list.toArray(EMPTY);
+        }
+        return new Compiled<>(schema, handlers);
+    }
+
+    private static final class Entry<T> {
+
+        private final SetupLib.InputHandler<T> handler;
+        @Nullable
+        private final Set<String> parts;
+
+        private Entry(SetupLib.InputHandler<T> handler, @Nullable Set<String> parts) {
+            this.handler = handler;
+            this.parts = parts;
+        }
+
+    }
+
+    private static final class Compiled<T> {
+
+        private final SetupSchema<T> schema;
+        private final SetupLib.InputHandler<T>[][] handlers;
+
+        private Compiled(SetupSchema<T> schema, SetupLib.InputHandler<T>[][] handlers) {
+            this.schema = schema;
+            this.handlers = handlers;
+        }
+
+    }
+
+}
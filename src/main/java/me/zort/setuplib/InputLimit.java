@@ -0,0 +1,81 @@
+package me.zort.setuplib;
+
+import com.google.common.base.Preconditions;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limit of inputs one session handles.
+ * <p>
+ * Each session has a token bucket holding up to {@link #getBurst()}
+ * inputs, refilled at constant rate. Inputs over the limit are
+ * dropped, or with {@link #coalescing()} only the newest one is kept
+ * and handled once the bucket refills. Invalid format replies have
+ * their own limit, so spam does not flood the player with them.
+ * <p>
+ * Bucket is kept as a single timestamp in session state,
+ * so checking the limit costs no allocation.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@Getter
+public final class InputLimit {
+
+    public static final InputLimit NONE = new InputLimit(0, 0, 0, false);
+
+    private final int burst;
+    // Time to refill one input in nanos, 0 means no limit.
+    private final long interval;
+    // Minimal time between invalid format replies in nanos.
+    private final long replyInterval;
+    private final boolean coalescing;
+
+    /**
+     * Creates limit of inputs.
+     *
+     * @param burst Inputs that can come at once.
+     * @param perSecond Inputs per second in the long run.
+     * @return The limit.
+     */
+    public static InputLimit of(int burst, double perSecond) {
+        Preconditions.checkArgument(burst > 0, "Burst must be positive!");
+        Preconditions.checkArgument(perSecond > 0, "Rate must be positive!");
+        return new InputLimit(burst, Math.max((long) (TimeUnit.SECONDS.toNanos(1) / perSecond), 1), 0, false);
+    }
+
+    /**
+     * Returns copy of this limit that keeps newest input over
+     * the limit instead of dropping it.
+     *
+     * @return The limit.
+     */
+    public InputLimit coalescing() {
+        return new InputLimit(burst, interval, replyInterval, true);
+    }
+
+    /**
+     * Returns copy of this limit that sends at most one
+     * invalid format reply per provided time.
+     *
+     * @param time The time, 0 for no limit.
+     * @param unit Unit of the time.
+     * @return The limit.
+     */
+    public InputLimit replyEvery(long time, TimeUnit unit) {
+        Preconditions.checkArgument(time >= 0, "Time cannot be negative!");
+        return new InputLimit(burst, interval, unit.toNanos(time), coalescing);
+    }
+
+    /**
+     * Returns how far ahead of now the bucket may be booked
+     * before it's empty.
+     *
+     * @return The tolerance in nanos.
+     */
+    protected long getTolerance() {
+        return interval * (burst - 1);
+    }
+
+}
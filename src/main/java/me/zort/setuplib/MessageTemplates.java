@@ -0,0 +1,135 @@
+package me.zort.setuplib;
+
+import com.google.common.collect.Maps;
+import me.zort.setuplib.annotation.Setup;
+import org.bukkit.ChatColor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Cache of compiled part messages.
+ * <p>
+ * Placeholders are resolved using {@link SetupLib.MessageBuilder}
+ * and color codes are translated only once per part, so sending
+ * a prompt does not touch the configuration again. Cache needs
+ * to be invalidated when the message source changes.
+ */
+public final class MessageTemplates {
+
+    private final SetupLib.MessageBuilder builder;
+    private final Map<SetupSchema.Part, Compiled> compiled;
+
+    public MessageTemplates(SetupLib.MessageBuilder builder) {
+        this.builder = builder;
+        this.compiled = Maps.newConcurrentMap();
+    }
+
+    /**
+     * Returns compiled {@link Setup#message()} of the part.
+     * Returned array is shared and must not be modified.
+     *
+     * @param part The part.
+     * @return Compiled lines.
+     */
+    public String[] getPrompt(SetupSchema.Part part) {
+        return get(part).prompt;
+    }
+
+    /**
+     * Returns {@link Setup#message()} of the part with resolved
+     * placeholders, but with color codes not translated yet.
+     * Returned array is shared and must not be modified.
+     *
+     * @param part The part.
+     * @return Lines for decorators.
+     */
+    public String[] getRawPrompt(SetupSchema.Part part) {
+        return get(part).rawPrompt;
+    }
+
+    /**
+     * Returns compiled {@link Setup#invalidFormat()} of the part.
+     * Returned array is shared and must not be modified.
+     *
+     * @param part The part.
+     * @return Compiled lines.
+     */
+    public String[] getInvalidFormat(SetupSchema.Part part) {
+        return get(part).invalidFormat;
+    }
+
+    /**
+     * Drops all compiled messages, so they are built
+     * again from the message source.
+     */
+    public void invalidate() {
+        compiled.clear();
+    }
+
+    private Compiled get(SetupSchema.Part part) {
+        Compiled messages = compiled.get(part);
+        if(messages == null) {
+            Setup annot = part.getAnnot();
+            String[] rawPrompt = compile(annot.message());
+            messages = new Compiled(rawPrompt, colorize(rawPrompt), colorize(compile(annot.invalidFormat())));
+            compiled.put(part, messages);
+        }
+        return messages;
+    }
+
+    private String[] compile(String[] raw) {
+        List<String> lines = new ArrayList<>(raw.length);
+        for(String line : raw) {
+            if(line.startsWith("{") && line.endsWith("}") && line.length() > 2) {
+                lines.addAll(builder.build(line.substring(1, line.length() - 1)));
+            } else {
+                lines.add(line);
+            }
+        }
+        // Missing configuration entries.
+        lines.removeIf(Objects::isNull);
+        return lines.toArray(new String[0]);
+    }
+
+    static String colorize(String line) {
+        return line.indexOf('&') != -1
+                ? ChatColor.translateAlternateColorCodes('&', line)
+                : line;
+    }
+
+    /**
+     * Colorizes lines, provided array is returned
+     * when there is nothing to colorize.
+     */
+    static String[] colorize(String[] lines) {
+        String[] colorized = lines;
+        for(int i = 0; i < lines.length; i++) {
+            String line = colorize(lines[i]);
+            if(line != lines[i]) {
+                if(colorized == lines) {
+                    colorized = lines.clone();
+                }
+                colorized[i] = line;
+            }
+        }
+        return colorized;
+    }
+
+    private static final class Compiled {
+
+        private final String[] rawPrompt;
+        private final String[] prompt;
+        private final String[] invalidFormat;
+
+        private Compiled(String[] rawPrompt, String[] prompt, String[] invalidFormat) {
+            this.rawPrompt = rawPrompt;
+            this.prompt = prompt;
+            this.invalidFormat = invalidFormat;
+        }
+
+    }
+
+}
@@ -0,0 +1,22 @@
+package me.zort.setuplib;
+
+/**
+ * Result code of parsing player's input.
+ * Parsers return these codes instead of throwing
+ * exceptions, so invalid input stays cheap.
+ */
+public enum ParseResult {
+
+    SUCCESS,
+    INVALID_FORMAT,
+    OUT_OF_RANGE,
+    // Input does not satisfy constraints of the part.
+    NOT_ALLOWED,
+    // Input was accepted, but the part expects more of it.
+    INCOMPLETE;
+
+    public boolean isSuccess() {
+        return this == SUCCESS;
+    }
+
+}
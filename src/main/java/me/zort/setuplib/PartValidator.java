@@ -0,0 +1,151 @@
+package me.zort.setuplib;
+
+import com.google.common.collect.ImmutableSet;
+import me.zort.setuplib.annotation.Setup;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Constraints of one part compiled from its {@link Setup}
+ * annotation.
+ * <p>
+ * Only declared constraints end up in the chain. Checks of
+ * the input run before it's parsed, cheapest first, range
+ * is checked on the parsed primitive value without boxing.
+ */
+public final class PartValidator {
+
+    private static final PartValidator NONE = new PartValidator(new Predicate[0], null);
+
+    private final Predicate<String>[] inputChecks;
+    @Nullable
+    private final LongPredicate range;
+
+    private PartValidator(Predicate<String>[] inputChecks, @Nullable LongPredicate range) {
+        this.inputChecks = inputChecks;
+        this.range = range;
+    }
+
+    /**
+     * Compiles constraints of the part.
+     *
+     * @param annot Annotation of the part.
+     * @param type Type of the part, null for custom types.
+     * @return The validator.
+     */
+    @SuppressWarnings("unchecked")
+    public static PartValidator compile(Setup annot, @Nullable RequiredType type) {
+        List<Predicate<String>> checks = new ArrayList<>();
+        int minLength = annot.minLength();
+        int maxLength = annot.maxLength();
+        if(minLength > 0 || maxLength < Integer.MAX_VALUE) {
+            checks.add(input -> input.length() >= minLength && input.length() <= maxLength);
+        }
+        if(annot.allowed().length > 0) {
+            Set<String> allowed = lowerCase(annot.allowed());
+            checks.add(input -> allowed.contains(input.toLowerCase(Locale.ROOT)));
+        }
+        if(annot.allowedEnum() != Enum.class) {
+            Enum<?>[] constants = annot.allowedEnum().getEnumConstants();
+            String[] names = new String[constants.length];
+            for(int i = 0; i < constants.length; i++) {
+                names[i] = constants[i].name();
+            }
+            Set<String> allowed = lowerCase(names);
+            checks.add(input -> allowed.contains(input.toLowerCase(Locale.ROOT)));
+        }
+        if(!annot.regex().isEmpty()) {
+            Pattern pattern = Pattern.compile(annot.regex());
+            checks.add(input -> pattern.matcher(input).matches());
+        }
+        LongPredicate range = compileRange(annot.min(), annot.max(), type);
+        if(checks.isEmpty() && range == null) {
+            return NONE;
+        }
+        return new PartValidator(checks.toArray(new Predicate[0]), range);
+    }
+
+    /**
+     * Returns validator without any constraints.
+     *
+     * @return The validator.
+     */
+    public static PartValidator none() {
+        return NONE;
+    }
+
+    @Nullable
+    private static LongPredicate compileRange(double min, double max, @Nullable RequiredType type) {
+        if(type == null || (min == Double.NEGATIVE_INFINITY && max == Double.POSITIVE_INFINITY)) {
+            return null;
+        }
+        switch(type) {
+            case INTEGER:
+            case LONG:
+            case SHORT:
+            case BYTE:
+                // Saturating casts, so unbounded side accepts everything.
+                long lo = (long) Math.ceil(min);
+                long hi = (long) Math.floor(max);
+                return raw -> raw >= lo && raw <= hi;
+            case DOUBLE:
+            case FLOAT:
+                return raw -> {
+                    double value = Double.longBitsToDouble(raw);
+                    return value >= min && value <= max;
+                };
+            default:
+                // Not numeric.
+                return null;
+        }
+    }
+
+    private static Set<String> lowerCase(String[] values) {
+        ImmutableSet.Builder<String> set = ImmutableSet.builder();
+        for(String value : values) {
+            set.add(value.toLowerCase(Locale.ROOT));
+        }
+        return set.build();
+    }
+
+    /**
+     * Checks raw input of the player.
+     *
+     * @param input The input.
+     * @return Result code.
+     */
+    public ParseResult validateInput(String input) {
+        for(Predicate<String> check : inputChecks) {
+            if(!check.test(input)) {
+                return ParseResult.NOT_ALLOWED;
+            }
+        }
+        return ParseResult.SUCCESS;
+    }
+
+    /**
+     * Checks parsed value of the part.
+     *
+     * @param values Slots with the value.
+     * @param index Index of the slot.
+     * @return Result code.
+     */
+    public ParseResult validateValue(ValueSlots values, int index) {
+        if(range != null && values.isPrimitive(index) && !range.test(values.getRaw(index))) {
+            return ParseResult.OUT_OF_RANGE;
+        }
+        return ParseResult.SUCCESS;
+    }
+
+    public boolean isEmpty() {
+        return this == NONE;
+    }
+
+}
@@ -1,58 +1,132 @@
 package me.zort.setuplib;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.primitives.Primitives;
 import lombok.Getter;
+import me.zort.setuplib.util.FastParsers;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Arrays;
+import java.util.Map;
+import java.util.function.LongFunction;
+import java.util.function.ToLongFunction;
 
 public enum RequiredType {
 
-    STRING(String.class, s -> s),
-    INTEGER(Integer.class, Integer::parseInt),
-    BOOLEAN(Boolean.class, Boolean::parseBoolean),
-    DOUBLE(Double.class, Double::parseDouble),
-    FLOAT(Float.class, Float::parseFloat),
-    LONG(Long.class, Long::parseLong),
-    SHORT(Short.class, Short::parseShort),
-    BYTE(Byte.class, Byte::parseByte),
-    CHARACTER(Character.class, c -> c.charAt(0));
+    STRING(String.class, (s, slots, i) -> {
+        slots.setObject(i, s);
+        return ParseResult.SUCCESS;
+    }, null, null),
+    INTEGER(Integer.class, (s, slots, i) -> FastParsers.parseLong(s, Integer.MIN_VALUE, Integer.MAX_VALUE, slots, i),
+            raw -> (int) raw, o -> (Integer) o),
+    BOOLEAN(Boolean.class, (s, slots, i) -> {
+        slots.setBoolean(i, "true".equalsIgnoreCase(s));
+        return ParseResult.SUCCESS;
+    }, raw -> raw != 0, o -> (Boolean) o ? 1L : 0L),
+    DOUBLE(Double.class, FastParsers::parseDouble,
+            Double::longBitsToDouble, o -> Double.doubleToRawLongBits((Double) o)),
+    FLOAT(Float.class, FastParsers::parseFloat,
+            raw -> (float) Double.longBitsToDouble(raw), o -> Double.doubleToRawLongBits((Float) o)),
+    LONG(Long.class, (s, slots, i) -> FastParsers.parseLong(s, Long.MIN_VALUE, Long.MAX_VALUE, slots, i),
+            raw -> raw, o -> (Long) o),
+    SHORT(Short.class, (s, slots, i) -> FastParsers.parseLong(s, Short.MIN_VALUE, Short.MAX_VALUE, slots, i),
+            raw -> (short) raw, o -> (Short) o),
+    BYTE(Byte.class, (s, slots, i) -> FastParsers.parseLong(s, Byte.MIN_VALUE, Byte.MAX_VALUE, slots, i),
+            raw -> (byte) raw, o -> (Byte) o),
+    CHARACTER(Character.class, (s, slots, i) -> {
+        if(s.isEmpty()) {
+            return ParseResult.INVALID_FORMAT;
+        }
+        slots.setChar(i, s.charAt(0));
+        return ParseResult.SUCCESS;
+    }, raw -> (char) raw, o -> (Character) o);
 
-    public static RequiredType valueOf(Class<?> wrapperType) {
-        wrapperType = Primitives.wrap(wrapperType);
+    private static final Map<Class<?>, RequiredType> BY_TYPE;
+
+    static {
+        ImmutableMap.Builder<Class<?>, RequiredType> builder = ImmutableMap.builder();
+        for(RequiredType type : values()) {
+            builder.put(type.getWrapperType(), type);
+            Class<?> primitive = Primitives.unwrap(type.getWrapperType());
+            if(primitive != type.getWrapperType()) {
+                builder.put(primitive, type);
+            }
+        }
+        BY_TYPE = builder.build();
+    }
 
-        // This is so annoying.
-        final Class<?> wtFinal = wrapperType;
-        return Arrays.stream(values())
-                .filter(type -> type.getWrapperType().equals(wtFinal))
-                .findFirst().orElse(null);
+    @Nullable
+    public static RequiredType valueOf(Class<?> wrapperType) {
+        return BY_TYPE.get(wrapperType);
     }
 
     @Getter
     private final Class<?> wrapperType;
+    @Getter
     private final TypeParser parser;
+    private final LongFunction<Object> boxer;
+    private final ToLongFunction<Object> unboxer;
 
-    RequiredType(Class<?> wrapperType, TypeParser parser) {
+    RequiredType(Class<?> wrapperType, TypeParser parser, LongFunction<Object> boxer, ToLongFunction<Object> unboxer) {
         this.wrapperType = wrapperType;
         this.parser = parser;
+        this.boxer = boxer;
+        this.unboxer = unboxer;
+    }
+
+    /**
+     * Parses input into provided slot.
+     *
+     * @param arg The input.
+     * @param slots Slots to store value into.
+     * @param index Index of the slot.
+     * @return Result code.
+     */
+    public ParseResult parse(String arg, ValueSlots slots, int index) {
+        return parser.parse(arg, slots, index);
     }
 
+    @Nullable
     public Object parse(String arg) {
-        try {
-            return parser.parse(arg);
-        } catch(Exception e) {
-            return null;
-        }
+        ValueSlots slots = new ValueSlots(new RequiredType[] {this});
+        return parse(arg, slots, 0).isSuccess()
+                ? slots.get(0)
+                : null;
     }
 
     public boolean canParse(String arg) {
         return parse(arg) != null;
     }
 
+    /**
+     * Returns whether values of this type are stored
+     * in primitive slots.
+     *
+     * @return True if this type is primitive.
+     */
+    public boolean isPrimitive() {
+        return boxer != null;
+    }
+
+    protected Object box(long raw) {
+        return boxer.apply(raw);
+    }
+
+    protected long unbox(Object value) {
+        return unboxer.applyAsLong(value);
+    }
+
     public interface TypeParser {
 
-        @Nullable
-        Object parse(String arg);
+        /**
+         * Parses input into provided slot without
+         * throwing on invalid input.
+         *
+         * @param arg The input.
+         * @param slots Slots to store value into.
+         * @param index Index of the slot.
+         * @return Result code.
+         */
+        ParseResult parse(String arg, ValueSlots slots, int index);
 
     }
 
@@ -0,0 +1,115 @@
+package me.zort.setuplib;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Saved progress of one setup session.
+ * <p>
+ * Values of primitive parts are kept as raw slot values,
+ * values of string parts and inputs of custom type parts
+ * are kept as strings. Custom type values are built again
+ * from their input when the session is resumed.
+ */
+@AllArgsConstructor
+@Getter
+public final class SessionSnapshot {
+
+    // Version of the format written by toBytes.
+    private static final byte FORMAT = 2;
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_PRIMITIVE = 1;
+    private static final byte TAG_STRING = 2;
+
+    // Key of the setup this session belongs to.
+    private final String key;
+    // Fingerprint of the schema, snapshots of changed setups are dropped.
+    private final int fingerprint;
+    private final int step;
+    private final long[] primitives;
+    private final String[] inputs;
+
+    /**
+     * Writes this snapshot. Only values up to the step
+     * are written, zero and null values take one byte.
+     *
+     * @param out The output.
+     * @throws IOException If writing fails.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeUTF(key);
+        out.writeInt(fingerprint);
+        out.writeShort(step);
+        for(int i = 0; i < step; i++) {
+            if(inputs[i] != null) {
+                out.writeByte(TAG_STRING);
+                // Not writeUTF, input may be longer than 64KB.
+                byte[] bytes = inputs[i].getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            } else if(primitives[i] != 0) {
+                out.writeByte(TAG_PRIMITIVE);
+                out.writeLong(primitives[i]);
+            } else {
+                // Zero primitive or null string.
+                out.writeByte(TAG_NULL);
+            }
+        }
+    }
+
+    public static SessionSnapshot readFrom(DataInput in) throws IOException {
+        String key = in.readUTF();
+        int fingerprint = in.readInt();
+        int step = in.readUnsignedShort();
+        long[] primitives = new long[step];
+        String[] inputs = new String[step];
+        for(int i = 0; i < step; i++) {
+            byte tag = in.readByte();
+            if(tag == TAG_STRING) {
+                int length = in.readInt();
+                if(length < 0) {
+                    throw new IOException("Invalid input length " + length + "!");
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                inputs[i] = new String(bytes, StandardCharsets.UTF_8);
+            } else if(tag == TAG_PRIMITIVE) {
+                primitives[i] = in.readLong();
+            }
+        }
+        return new SessionSnapshot(key, fingerprint, step, primitives, inputs);
+    }
+
+    /**
+     * Encodes this snapshot with version of the format,
+     * so it can be sent to other server.
+     *
+     * @return The bytes.
+     * @see #fromBytes(byte[])
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try(DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT);
+            writeTo(out);
+        } catch(IOException e) {
+            // Not thrown by byte array stream.
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static SessionSnapshot fromBytes(byte[] bytes) throws IOException {
+        try(DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            byte format = in.readByte();
+            if(format != FORMAT) {
+                throw new IOException("Unknown session format " + format + "!");
+            }
+            return readFrom(in);
+        }
+    }
+
+}
@@ -0,0 +1,256 @@
+package me.zort.setuplib;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import me.zort.setuplib.util.TimerWheel;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Mutable state of one running setup.
+ * <p>
+ * Inputs and timeouts are passed through serialized mailbox,
+ * so only one thread at a time works with the session and
+ * tasks run exactly once and in order. Threads never wait
+ * for each other, task of a busy session is run by the
+ * thread that is already working on it.
+ *
+ * @param <T> Type of target.
+ */
+@Getter(AccessLevel.PROTECTED)
+@Setter(AccessLevel.PROTECTED)
+final class SessionState<T> {
+
+    // Inputs deferred while parked, more are dropped.
+    private static final int MAX_DEFERRED = 16;
+
+    private final ValueSlots values;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final Queue<Runnable> inbox;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final AtomicInteger pending;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final AtomicBoolean closed;
+    // Player this session belongs to.
+    private volatile UUID playerId;
+    private volatile long deadline;
+    private final long startNanos;
+    // When current part was sent.
+    private long stepNanos;
+    private volatile TimerWheel.Timeout timeoutTask;
+    // Guarded by the mailbox.
+    private int step;
+    private SetupPart<T> current;
+    // Raw inputs of custom type parts, created on first use.
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private String[] inputs;
+    // Ticket of current park, 0 if not parked.
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private int parked;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private int tickets;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Queue<String> deferred;
+    // Token buckets of the input limit, as time they are booked until.
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private long inputsBooked;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private long repliesBooked;
+    // Newest input over the limit, when coalescing.
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private String coalesced;
+    @Setter(AccessLevel.NONE)
+    private volatile int droppedInputs;
+
+    protected SessionState(ValueSlots values) {
+        this.values = values;
+        this.inbox = new ConcurrentLinkedQueue<>();
+        this.pending = new AtomicInteger();
+        this.closed = new AtomicBoolean(false);
+        this.step = 0;
+        this.startNanos = System.nanoTime();
+        this.stepNanos = startNanos;
+        this.inputsBooked = startNanos;
+        this.repliesBooked = startNanos;
+    }
+
+    /**
+     * Queues task of this session. If no other thread works
+     * with this session, the task is run on current thread,
+     * together with tasks queued in the meantime. Tasks of
+     * closed session are dropped. Task that throws does not
+     * stop the others, its exception is thrown after them.
+     *
+     * @param task The task.
+     */
+    protected void execute(Runnable task) {
+        inbox.add(task);
+        if(pending.getAndIncrement() != 0) {
+            // Other thread is working, it will pick this up.
+            return;
+        }
+        RuntimeException error = null;
+        do {
+            Runnable next = inbox.poll();
+            try {
+                if(!isClosed()) {
+                    next.run();
+                }
+            } catch(RuntimeException e) {
+                // Later tasks must still run, error is thrown once they did.
+                if(error == null) {
+                    error = e;
+                } else {
+                    error.addSuppressed(e);
+                }
+            }
+        } while(pending.decrementAndGet() != 0);
+        if(error != null) {
+            throw error;
+        }
+    }
+
+    protected int park() {
+        if(++tickets == 0) {
+            tickets = 1;
+        }
+        parked = tickets;
+        return parked;
+    }
+
+    protected boolean unpark(int ticket) {
+        if(parked == 0 || parked != ticket) {
+            return false;
+        }
+        parked = 0;
+        return true;
+    }
+
+    protected boolean isParked() {
+        return parked != 0;
+    }
+
+    protected boolean defer(String input) {
+        if(deferred == null) {
+            deferred = new ArrayDeque<>();
+        }
+        return deferred.size() < MAX_DEFERRED && deferred.add(input);
+    }
+
+    @Nullable
+    protected String pollDeferred() {
+        return deferred != null ? deferred.poll() : null;
+    }
+
+    /**
+     * Takes one input from the bucket.
+     *
+     * @param limit The limit.
+     * @param now Current time in nanos.
+     * @return 0 if the input can be handled, otherwise
+     * nanos until the bucket has room again.
+     */
+    protected long acquireInput(InputLimit limit, long now) {
+        long interval = limit.getInterval();
+        if(interval == 0) {
+            return 0;
+        }
+        // Compared by difference, nanoTime may be negative.
+        long booked = inputsBooked - now > 0 ? inputsBooked : now;
+        long wait = booked - now - limit.getTolerance();
+        if(wait > 0) {
+            return wait;
+        }
+        inputsBooked = booked + interval;
+        return 0;
+    }
+
+    protected boolean acquireReply(InputLimit limit, long now) {
+        long interval = limit.getReplyInterval();
+        if(interval == 0) {
+            return true;
+        }
+        if(repliesBooked - now > 0) {
+            return false;
+        }
+        repliesBooked = now + interval;
+        return true;
+    }
+
+    /**
+     * Keeps input over the limit, replacing older one.
+     *
+     * @param input The input.
+     * @return True if no input was kept before.
+     */
+    protected boolean coalesce(String input) {
+        String previous = coalesced;
+        coalesced = input;
+        if(previous != null) {
+            droppedInputs++;
+        }
+        return previous == null;
+    }
+
+    protected boolean hasCoalesced() {
+        return coalesced != null;
+    }
+
+    @Nullable
+    protected String takeCoalesced() {
+        String input = coalesced;
+        coalesced = null;
+        return input;
+    }
+
+    protected void drop() {
+        droppedInputs++;
+    }
+
+    @Nullable
+    protected String getInput(int index) {
+        String[] inputs = this.inputs;
+        return inputs != null ? inputs[index] : null;
+    }
+
+    protected void setInput(int index, @Nullable String input) {
+        if(inputs == null) {
+            if(input == null) {
+                return;
+            }
+            inputs = new String[values.size()];
+        }
+        inputs[index] = input;
+    }
+
+    /**
+     * Closes this session.
+     *
+     * @return True if the session was closed by this call.
+     */
+    protected boolean close() {
+        return closed.compareAndSet(false, true);
+    }
+
+    protected boolean isClosed() {
+        return closed.get();
+    }
+
+}
@@ -0,0 +1,295 @@
+package me.zort.setuplib;
+
+import com.google.common.base.Preconditions;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import me.zort.setuplib.exception.InputNotAcceptibleException;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Headless execution of a setup over many records.
+ * <p>
+ * Records are parsed, validated and bound by the same
+ * compiled schema as chat sessions, but without any player,
+ * messages or {@link SetupLibListener}. Input handlers
+ * don't run and custom type builders get null player.
+ * Records are processed in parallel on fork-join pool and
+ * failure of one record does not stop the others.
+ *
+ * @param <T> Type of target.
+ */
+public final class SetupBatch<T> {
+
+    private final SetupTemplate<T> template;
+    private ForkJoinPool pool;
+
+    protected SetupBatch(SetupTemplate<T> template) {
+        this.template = template;
+        this.pool = ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Sets pool the records are processed on.
+     * Default is the common pool.
+     *
+     * @param pool The pool.
+     * @return This instance.
+     */
+    public SetupBatch<T> on(ForkJoinPool pool) {
+        this.pool = Preconditions.checkNotNull(pool);
+        return this;
+    }
+
+    /**
+     * Runs records given as values keyed by part name,
+     * like {@code address.street}. Values of collection parts
+     * can be given as iterables, other values are converted
+     * to string and parsed like chat input.
+     *
+     * @param records The records.
+     * @return Result of all records.
+     */
+    public Result<T> run(Stream<? extends Map<String, ?>> records) {
+        List<? extends Map<String, ?>> list = records.collect(Collectors.toList());
+        return execute(list.size(), i -> bindMap(list.get(i)));
+    }
+
+    /**
+     * Runs records given as inputs in order a player would
+     * send them to the chat, including terminators of
+     * collection parts.
+     *
+     * @param records The records.
+     * @return Result of all records.
+     */
+    public Result<T> runLines(Stream<? extends List<String>> records) {
+        List<? extends List<String>> list = records.collect(Collectors.toList());
+        return execute(list.size(), i -> bindLines(list.get(i)));
+    }
+
+    private Result<T> execute(int size, IntFunction<T> task) {
+        Object[] results = new Object[size];
+        // Parallel stream runs in the pool it's started from.
+        pool.submit(() -> IntStream.range(0, size).parallel().forEach(i -> {
+            try {
+                results[i] = task.apply(i);
+            } catch(RecordException e) {
+                results[i] = new RecordError(i, e.part, e.result, e.getMessage(), e.getCause());
+            } catch(RuntimeException e) {
+                results[i] = new RecordError(i, null, null, e.toString(), e);
+            }
+        })).join();
+
+        List<T> values = new ArrayList<>(size);
+        List<RecordError> errors = new ArrayList<>();
+        for(Object result : results) {
+            if(result instanceof RecordError) {
+                errors.add((RecordError) result);
+            } else {
+                values.add(template.getTarget().cast(result));
+            }
+        }
+        return new Result<>(values, errors);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T bindMap(Map<String, ?> record) {
+        SetupSchema<T> schema = template.getSchema();
+        ValueSlots values = schema.newSlots();
+        for(int i = 0; i < schema.size(); i++) {
+            SetupSchema.Part part = schema.getPart(i);
+            Object value = record.get(part.getName());
+            if(value == null) {
+                throw new RecordException(part, null, "Missing value of part " + part.getName() + "!", null);
+            }
+            if(part.isCollection()) {
+                Iterable<?> elements = value instanceof Iterable
+                        ? (Iterable<Object>) value
+                        : Collections.singletonList(value);
+                for(Object element : elements) {
+                    if(apply(part, String.valueOf(element), values) != ParseResult.INCOMPLETE) {
+                        // Terminator among the elements.
+                        break;
+                    }
+                }
+                apply(part, part.getAnnot().terminator(), values);
+            } else {
+                apply(part, String.valueOf(value), values);
+            }
+        }
+        return bind(values);
+    }
+
+    private T bindLines(List<String> record) {
+        SetupSchema<T> schema = template.getSchema();
+        ValueSlots values = schema.newSlots();
+        int step = 0;
+        for(String input : record) {
+            if(step == schema.size()) {
+                throw new RecordException(null, null, "Too many inputs!", null);
+            }
+            if(apply(schema.getPart(step), input, values) != ParseResult.INCOMPLETE) {
+                step++;
+            }
+        }
+        if(step < schema.size()) {
+            SetupSchema.Part part = schema.getPart(step);
+            throw new RecordException(part, null, "Missing input of part " + part.getName() + "!", null);
+        }
+        return bind(values);
+    }
+
+    /**
+     * Stores input of the part.
+     *
+     * @return {@link ParseResult#INCOMPLETE} if collection part
+     * expects more, otherwise {@link ParseResult#SUCCESS}.
+     */
+    private ParseResult apply(SetupSchema.Part part, String input, ValueSlots values) {
+        if(part.getParser() != null) {
+            ParseResult result = part.parse(input, values);
+            if(!result.isSuccess() && result != ParseResult.INCOMPLETE) {
+                throw invalid(part, input, result);
+            }
+            return result;
+        }
+        if(!part.getValidator().validateInput(input).isSuccess()) {
+            throw invalid(part, input, ParseResult.NOT_ALLOWED);
+        }
+        SetupLib.AsyncCustomTypeBuilder<?> builder = template.getCustomTypeBuilder(part.getCustomType());
+        if(builder == null) {
+            throw new RecordException(part, null, String.format("No custom type builder found for %s of part %s!", part.getCustomType().getName(), part.getName()), null);
+        }
+        try {
+            CompletableFuture<?> future = builder.build(null, input);
+            // Pool of parallel batch gets another worker while this one waits.
+            ForkJoinPool.managedBlock(new BuildWaiter(future, template.getBuildTimeout()));
+            if(!future.isDone()) {
+                throw new TimeoutException();
+            }
+            values.setObject(part.getIndex(), future.get());
+            return ParseResult.SUCCESS;
+        } catch(ExecutionException e) {
+            if(e.getCause() instanceof InputNotAcceptibleException) {
+                String message = String.join(" ", ((InputNotAcceptibleException) e.getCause()).getMessageLines());
+                throw new RecordException(part, ParseResult.NOT_ALLOWED, message, e.getCause());
+            }
+            throw new RecordException(part, null, "Cannot build value of part " + part.getName() + "!", e.getCause());
+        } catch(TimeoutException e) {
+            throw new RecordException(part, null, "Value of part " + part.getName() + " was not built in time!", e);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RecordException(part, null, "Interrupted!", e);
+        }
+    }
+
+    private T bind(ValueSlots values) {
+        try {
+            return template.getResultBinder().bind(values);
+        } catch(Exception e) {
+            throw new RecordException(null, null, String.format("Cannot instantinate target! (%s: %s)", e.getClass().getSimpleName(), e.getMessage()), e);
+        }
+    }
+
+    private static RecordException invalid(SetupSchema.Part part, String input, ParseResult result) {
+        return new RecordException(part, result, String.format("Invalid input '%s' of part %s! (%s)", input, part.getName(), result), null);
+    }
+
+    /**
+     * Waits for custom type value up to the build timeout.
+     */
+    private static final class BuildWaiter implements ForkJoinPool.ManagedBlocker {
+
+        private final Future<?> future;
+        // Timeout in nanos, 0 means no limit.
+        private final long timeout;
+        private final long deadline;
+
+        private BuildWaiter(Future<?> future, long timeout) {
+            this.future = future;
+            this.timeout = timeout;
+            this.deadline = System.nanoTime() + timeout;
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+            try {
+                if(timeout > 0) {
+                    future.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+                } else {
+                    future.get();
+                }
+            } catch(ExecutionException | TimeoutException | CancellationException e) {
+                // Reported by the caller.
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return future.isDone() || (timeout > 0 && System.nanoTime() - deadline >= 0);
+        }
+
+    }
+
+    /**
+     * Result of the batch.
+     */
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    @Getter
+    public static final class Result<T> {
+
+        // Bound targets in order of their records.
+        private final List<T> values;
+        // Failed records in order.
+        private final List<RecordError> errors;
+
+        public boolean hasErrors() {
+            return !errors.isEmpty();
+        }
+
+    }
+
+    /**
+     * Failure of one record.
+     */
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    @Getter
+    public static final class RecordError {
+
+        // Index of the record in the input.
+        private final int record;
+        @Nullable
+        private final SetupSchema.Part part;
+        // Null if the input was not rejected by parser.
+        @Nullable
+        private final ParseResult result;
+        private final String message;
+        @Nullable
+        private final Throwable cause;
+
+    }
+
+    private static final class RecordException extends RuntimeException {
+
+        private final SetupSchema.Part part;
+        private final ParseResult result;
+
+        private RecordException(@Nullable SetupSchema.Part part, @Nullable ParseResult result, String message, @Nullable Throwable cause) {
+            // Stack trace is not needed, records fail often.
+            super(message, cause, false, false);
+            this.part = part;
+            this.result = result;
+        }
+
+    }
+
+}
@@ -0,0 +1,265 @@
+package me.zort.setuplib;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import me.zort.setuplib.annotation.Setup;
+import org.bukkit.configuration.ConfigurationSection;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.annotation.Annotation;
+import java.util.*;
+
+/**
+ * Setup defined by data instead of annotated class.
+ * <p>
+ * Each step is compiled into the same {@link SetupSchema}
+ * part as {@link Setup} field would be, so definitions have
+ * the same types and constraints. Definitions are immutable
+ * and equal when their content is equal.
+ *
+ * @see me.zort.setuplib.impl.YamlSetupLoader
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@EqualsAndHashCode
+@Getter
+public final class SetupDefinition {
+
+    private static final Map<String, Class<?>> COLLECTIONS = ImmutableMap.of(
+            "list", List.class,
+            "set", Set.class);
+
+    private final String id;
+    private final List<Step> steps;
+
+    /**
+     * Reads definition from configuration section with
+     * steps in order they should be asked:
+     * <pre>
+     * steps:
+     *   name:
+     *     type: string
+     *     message: "&amp;7What is your name?"
+     *     max-length: 16
+     *   tags:
+     *     type: list&lt;string&gt;
+     *     message: ["Tags?", "Type done to finish."]
+     * </pre>
+     * Type is name of {@link RequiredType}, list or set of it,
+     * or class name of registered custom type or enum.
+     * Other keys are named like {@link Setup} attributes.
+     *
+     * @param id Id of the setup.
+     * @param section The section.
+     * @param classLoader Loader of custom types and enums.
+     * @return The definition.
+     * @throws IllegalArgumentException If the definition is not valid.
+     */
+    public static SetupDefinition parse(String id, ConfigurationSection section, ClassLoader classLoader) {
+        ConfigurationSection stepsSection = section.getConfigurationSection("steps");
+        Preconditions.checkArgument(stepsSection != null, "Setup %s has no steps!", id);
+        ImmutableList.Builder<Step> steps = ImmutableList.builder();
+        for(String name : stepsSection.getKeys(false)) {
+            ConfigurationSection step = stepsSection.getConfigurationSection(name);
+            Preconditions.checkArgument(step != null, "Step %s of setup %s is not a section!", name, id);
+            steps.add(Step.parse(name, step, classLoader));
+        }
+        return new SetupDefinition(id, steps.build());
+    }
+
+    /**
+     * Single step of the definition. Step is its own
+     * {@link Setup} annotation, so constraints and messages
+     * are compiled the same way as for annotated fields.
+     */
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    @EqualsAndHashCode
+    @SuppressWarnings("ClassExplicitlyAnnotation")
+    public static final class Step implements Setup {
+
+        private final String name;
+        // Type as it was written in the definition.
+        @Getter
+        private final String typeName;
+        @Getter
+        private final Class<?> type;
+        // Type of elements of list or set.
+        @Getter
+        @Nullable
+        private final Class<?> elementType;
+        private final List<String> message;
+        private final List<String> invalidFormat;
+        private final long timeout;
+        private final double min;
+        private final double max;
+        private final int minLength;
+        private final int maxLength;
+        private final String regex;
+        private final List<String> allowed;
+        private final Class<? extends Enum> allowedEnum;
+        private final String terminator;
+
+        /**
+         * Creates step with all its attributes, this is
+         * used by generated schemas.
+         *
+         * @see GeneratedSchema
+         */
+        public static Step of(String name,
+                              String typeName,
+                              Class<?> type,
+                              @Nullable Class<?> elementType,
+                              String[] message,
+                              String[] invalidFormat,
+                              long timeout,
+                              double min,
+                              double max,
+                              int minLength,
+                              int maxLength,
+                              String regex,
+                              String[] allowed,
+                              Class<? extends Enum> allowedEnum,
+                              String terminator) {
+            return new Step(name, typeName, type, elementType, ImmutableList.copyOf(message), ImmutableList.copyOf(invalidFormat),
+                    timeout, min, max, minLength, maxLength, regex, ImmutableList.copyOf(allowed), allowedEnum, terminator);
+        }
+
+        private static Step parse(String name, ConfigurationSection section, ClassLoader classLoader) {
+            String typeName = section.getString("type", "string").trim();
+            Class<?> type;
+            Class<?> elementType = null;
+            int open = typeName.indexOf('<');
+            if(open != -1 && typeName.endsWith(">")) {
+                type = COLLECTIONS.get(typeName.substring(0, open).trim().toLowerCase(Locale.ROOT));
+                Preconditions.checkArgument(type != null, "Unknown collection type %s of step %s!", typeName, name);
+                elementType = type(typeName.substring(open + 1, typeName.length() - 1).trim(), classLoader);
+            } else {
+                type = type(typeName, classLoader);
+            }
+            return new Step(name,
+                    typeName,
+                    type,
+                    elementType,
+                    lines(section, "message"),
+                    lines(section, "invalid-format"),
+                    section.getLong("timeout", 0),
+                    section.getDouble("min", Double.NEGATIVE_INFINITY),
+                    section.getDouble("max", Double.POSITIVE_INFINITY),
+                    section.getInt("min-length", 0),
+                    section.getInt("max-length", Integer.MAX_VALUE),
+                    section.getString("regex", ""),
+                    lines(section, "allowed"),
+                    Enum.class,
+                    section.getString("terminator", "done"));
+        }
+
+        private static Class<?> type(String typeName, ClassLoader classLoader) {
+            RequiredType requiredType = requiredType(typeName);
+            if(requiredType != null) {
+                return requiredType.getWrapperType();
+            }
+            try {
+                return Class.forName(typeName, false, classLoader);
+            } catch(ClassNotFoundException e) {
+                throw new IllegalArgumentException("Unknown type " + typeName + "!", e);
+            }
+        }
+
+        @Nullable
+        private static RequiredType requiredType(String typeName) {
+            String upper = typeName.toUpperCase(Locale.ROOT);
+            // Java names of primitives are accepted too.
+            if(upper.equals("INT")) {
+                return RequiredType.INTEGER;
+            } else if(upper.equals("CHAR")) {
+                return RequiredType.CHARACTER;
+            }
+            for(RequiredType type : RequiredType.values()) {
+                if(type.name().equals(upper)) {
+                    return type;
+                }
+            }
+            return null;
+        }
+
+        private static List<String> lines(ConfigurationSection section, String key) {
+            if(section.isList(key)) {
+                return ImmutableList.copyOf(section.getStringList(key));
+            }
+            String line = section.getString(key);
+            return line != null
+                    ? ImmutableList.of(line)
+                    : ImmutableList.of();
+        }
+
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public String[] message() {
+            return message.toArray(new String[0]);
+        }
+
+        @Override
+        public String[] invalidFormat() {
+            return invalidFormat.toArray(new String[0]);
+        }
+
+        @Override
+        public long timeout() {
+            return timeout;
+        }
+
+        @Override
+        public double min() {
+            return min;
+        }
+
+        @Override
+        public double max() {
+            return max;
+        }
+
+        @Override
+        public int minLength() {
+            return minLength;
+        }
+
+        @Override
+        public int maxLength() {
+            return maxLength;
+        }
+
+        @Override
+        public String regex() {
+            return regex;
+        }
+
+        @Override
+        public String[] allowed() {
+            return allowed.toArray(new String[0]);
+        }
+
+        @Override
+        public Class<? extends Enum> allowedEnum() {
+            return allowedEnum;
+        }
+
+        @Override
+        public String terminator() {
+            return terminator;
+        }
+
+        @Override
+        public Class<? extends Annotation> annotationType() {
+            return Setup.class;
+        }
+
+    }
+
+}
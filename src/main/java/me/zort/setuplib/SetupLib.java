@@ -1,58 +1,73 @@
 package me.zort.setuplib;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Maps;
-import com.google.common.primitives.Primitives;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import lombok.AccessLevel;
-import lombok.AllArgsConstructor;
 import lombok.Getter;
-import lombok.Setter;
 import me.zort.setuplib.annotation.Setup;
 import me.zort.setuplib.exception.InputNotAcceptibleException;
 import me.zort.setuplib.exception.NotSetupException;
-import me.zort.setuplib.exception.SetupException;
+import me.zort.setuplib.exception.SetupSuspendedException;
+import me.zort.setuplib.exception.SetupTimeoutException;
+import me.zort.setuplib.impl.ChatMessageSender;
 import me.zort.setuplib.impl.ConfigMessageBuilder;
 import org.apache.commons.lang.ArrayUtils;
-import org.bukkit.ChatColor;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Player;
-import org.bukkit.event.HandlerList;
 import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.Nullable;
 
-import java.lang.reflect.Field;
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.function.BiConsumer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A representation of setup.
- * When started, this object is cloned for keeping this data
- * as template.
+ * When started, configuration is frozen into {@link SetupTemplate}
+ * shared by all sessions, until this setup is changed again.
  *
  * @param <T> Type of target.
  */
-@AllArgsConstructor(access = AccessLevel.PRIVATE)
 @Getter(AccessLevel.PROTECTED)
-public class SetupLib<T> implements Iterator<SetupPart<T>>, Cloneable {
+public class SetupLib<T> {
 
-    private static final Map<String, SetupLibListener> LISTENERS = Maps.newConcurrentMap();
+    private static final SetupLibListener LISTENER = new SetupLibListener();
+    private static volatile SetupMetrics metrics = SetupMetrics.NOOP;
 
     private final Class<T> target;
     private final Plugin plugin;
-    private final Map<String, Object> cache;
     private SetupMessageDecorator<T>[] decorators;
-    private List<InputHandler<T>> inputHandlers;
-    private Map<Class<?>, CustomTypeBuilder<?>> customTypes;
+    private InputHandlers<T> inputHandlers;
+    private Map<Class<?>, AsyncCustomTypeBuilder<?>> customTypes;
+    // Built on first use, replaced when custom type is registered.
+    @Getter(AccessLevel.NONE)
+    private CustomTypeIndex customTypeIndex;
     private FinishHandler<T> finishHandler;
     private ErrorHandler<T> errorHandler;
+    private Executor completionExecutor;
     private MessageBuilder placeholderMessageBuilder;
-    @Setter
-    private BiConsumer<Player, String> messageSender;
-
-    private final List<CompletableFuture<T>> futures;
-
-    private SetupPart<T> current;
+    private MessageTemplates messages;
+    private ResultBinder<T> resultBinder;
+    // Timeout of the whole setup in nanos, 0 means no limit.
+    private long timeout;
+    // Time limit of async custom type builders in nanos.
+    private long buildTimeout;
+    private InputLimit inputLimit;
+    private SessionStore sessionStore;
+    private SessionTransport sessionTransport;
+    private String sessionKey;
+    private MessageSender messageSender;
+
+    private SetupSchema<T> schema;
+    // Source of the schema when not loaded from annotated target.
+    @Nullable
+    private SetupDefinition definition;
+    // Frozen configuration, dropped on every change.
+    @Getter(AccessLevel.NONE)
+    private volatile SetupTemplate<T> template;
 
     public interface SetupMessageDecorator<T> {
         String[] modify(SetupPart<T> part, String[] message);
@@ -74,6 +89,104 @@ public class SetupLib<T> implements Iterator<SetupPart<T>>, Cloneable {
         T build(Player player, String arg) throws InputNotAcceptibleException;
     }
 
+    public interface AsyncCustomTypeBuilder<T> {
+        /**
+         * Starts building custom type value from input. Session
+         * waits for the future without blocking chat thread, inputs
+         * sent in the meantime are processed after it completes.
+         * <p>
+         * Future completed with {@link InputNotAcceptibleException}
+         * rejects the input, other exceptions fail the setup.
+         *
+         * @param player The player.
+         * @param arg The input.
+         * @return Future of the value.
+         */
+        CompletableFuture<T> build(Player player, String arg);
+    }
+
+    public interface ResultBinder<T> {
+        /**
+         * Constructs target from values collected
+         * during the setup.
+         *
+         * @param values Values ordered as parts in {@link SetupSchema}.
+         * @return The target.
+         * @throws Exception If target cannot be constructed.
+         */
+        T bind(ValueSlots values) throws Exception;
+    }
+
+    public interface SessionStore {
+        /**
+         * Saves progress of the player's session, replacing
+         * the previous one. This is called from chat thread,
+         * so it should not block.
+         *
+         * @param playerId Id of the player.
+         * @param snapshot The progress.
+         */
+        void save(UUID playerId, SessionSnapshot snapshot);
+
+        /**
+         * Removes saved progress of the player.
+         *
+         * @param playerId Id of the player.
+         */
+        void remove(UUID playerId);
+
+        /**
+         * Loads saved progress of the player.
+         *
+         * @param playerId Id of the player.
+         * @return Future completed with the progress, or null if there is none.
+         */
+        CompletableFuture<SessionSnapshot> load(UUID playerId);
+    }
+
+    public interface SessionTransport {
+        /**
+         * Hands progress of the player's session off to other
+         * servers. This is called off the main thread when the
+         * player leaves, so it may block.
+         *
+         * @param playerId Id of the player.
+         * @param session Encoded progress, see {@link SessionSnapshot#toBytes()}.
+         * @throws IOException If the progress cannot be sent.
+         */
+        void send(UUID playerId, byte[] session) throws IOException;
+
+        /**
+         * Receives progress handed off to this server. The player
+         * may join before the other server sends it, so transport
+         * should wait for it for a while.
+         *
+         * @param playerId Id of the player.
+         * @return Future completed with encoded progress, or null if none came.
+         */
+        CompletableFuture<byte[]> receive(UUID playerId);
+    }
+
+    public interface MessageSender {
+        void send(Player player, String message);
+
+        /**
+         * Sends lines of one message at once, like prompt
+         * of a part. Lines are joined into single multi-line
+         * message by default.
+         *
+         * @param player The player.
+         * @param lines Colorized lines.
+         */
+        default void send(Player player, String[] lines) {
+            if(lines.length == 1) {
+                send(player, lines[0]);
+            } else if(lines.length > 1) {
+                send(player, String.join("\n", lines));
+            }
+        }
+    }
+
     public interface MessageBuilder {
         /**
          * Constructs message according to placeholder
@@ -107,59 +220,214 @@ public class SetupLib<T> implements Iterator<SetupPart<T>>, Cloneable {
     public SetupLib(Plugin plugin, Class<T> target) throws NotSetupException {
         this.target = target;
         this.plugin = plugin;
-        this.cache = new HashMap<>();
-        this.current = null;
-        this.futures = Collections.synchronizedList(new ArrayList<>());
-        this.inputHandlers = Collections.synchronizedList(new ArrayList<>());
+        this.inputHandlers = new InputHandlers<>();
         this.customTypes = new HashMap<>();
+        this.customTypeIndex = null;
         // This is default builder that keeps original message.
-        this.placeholderMessageBuilder = Collections::singletonList;
+        setMessageBuilder(Collections::singletonList);
+        // Default binder is provided by schema.
+        this.resultBinder = null;
+        this.timeout = 0;
+        this.buildTimeout = TimeUnit.SECONDS.toNanos(5);
+        this.inputLimit = InputLimit.NONE;
+        this.sessionStore = null;
+        this.sessionTransport = null;
+        this.sessionKey = target.getName();
         onFinish((player, result) -> {});
         onError((player, err) -> {});
+        completeAsync();
         setDecorator(null);
-        setMessageSender((player, msg) -> {
-            msg = ChatColor.translateAlternateColorCodes('&', msg);
-            player.sendMessage(msg);
-        });
+        // Messages are already colorized.
+        setMessageSender(ChatMessageSender.INSTANCE);
     }
 
     public static void init(Plugin plugin) {
         clear(plugin);
-        LISTENERS.put(plugin.getName(), new SetupLibListener(plugin));
+        LISTENER.attach(plugin);
     }
 
     public static void clear(Plugin plugin) {
-        clear(plugin.getName());
+        LISTENER.detach(plugin);
     }
 
     public static void clear(String pluginName) {
-        Optional.ofNullable(LISTENERS.get(pluginName))
-                .ifPresent(HandlerList::unregisterAll);
-        LISTENERS.remove(pluginName);
+        LISTENER.getAttached(pluginName).ifPresent(SetupLib::clear);
     }
 
     public static <T> SetupLib<T> create(Plugin plugin, Class<T> clazz) {
-        if(!LISTENERS.containsKey(plugin.getName())) {
+        if(!LISTENER.isAttached(plugin)) {
             init(plugin);
         }
         return new SetupLib<>(plugin, clazz);
     }
 
+    /**
+     * Creates setup from definition. Results of the setup are
+     * maps of values keyed by name of their step.
+     *
+     * @param plugin The plugin to use.
+     * @param definition The definition.
+     * @return The setup.
+     * @see SetupSchema#of(SetupDefinition, CustomTypeIndex)
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static SetupLib<Map<String, Object>> create(Plugin plugin, SetupDefinition definition) {
+        SetupLib<Map<String, Object>> setup = create(plugin, (Class) Map.class);
+        setup.definition = definition;
+        setup.sessionKey = setup.getDefaultSessionKey();
+        return setup;
+    }
+
+    /**
+     * Creates runner of conversations written as
+     * straight-line code.
+     *
+     * @param plugin The plugin to use.
+     * @return The runner.
+     * @see Conversation
+     */
+    public static ConversationRunner conversations(Plugin plugin) {
+        if(!LISTENER.isAttached(plugin)) {
+            init(plugin);
+        }
+        return new ConversationRunner(plugin);
+    }
+
+    /**
+     * Returns chat dispatcher shared by all plugins.
+     *
+     * @return The listener.
+     */
+    public static SetupLibListener getListener() {
+        return LISTENER;
+    }
+
+    /**
+     * Sets receiver of runtime events of all setups.
+     *
+     * @param metrics The metrics, or null to disable them.
+     * @see me.zort.setuplib.impl.DefaultSetupMetrics
+     */
+    public static void setMetrics(@Nullable SetupMetrics metrics) {
+        SetupLib.metrics = metrics != null ? metrics : SetupMetrics.NOOP;
+    }
+
+    public static SetupMetrics getMetrics() {
+        return metrics;
+    }
+
     public SetupLib<T> setConfigSource(FileConfiguration config) {
         return setMessageBuilder(new ConfigMessageBuilder(config));
     }
 
     public SetupLib<T> setMessageBuilder(MessageBuilder builder) {
         this.placeholderMessageBuilder = builder;
+        this.messages = new MessageTemplates(builder);
+        return changed();
+    }
+
+    /**
+     * Drops compiled messages of this setup and all its
+     * running sessions. This should be called after the
+     * message source, like configuration, is reloaded.
+     *
+     * @return This instance.
+     */
+    public SetupLib<T> reloadMessages() {
+        messages.invalidate();
         return this;
     }
 
+    /**
+     * Sets binder that constructs the target when setup
+     * finishes. By default, target is constructed using
+     * its no args or canonical constructor.
+     *
+     * @param resultBinder The binder, or null for default one.
+     * @return This instance.
+     */
+    public SetupLib<T> setResultBinder(@Nullable ResultBinder<T> resultBinder) {
+        this.resultBinder = resultBinder;
+        return changed();
+    }
+
+    /**
+     * Sets time the player has to finish whole setup.
+     * When the time runs out, setup is cancelled with
+     * {@link SetupTimeoutException}. Time limits of single
+     * parts can be set using {@link Setup#timeout()}.
+     *
+     * @param timeout The timeout, 0 for no limit.
+     * @param unit Unit of the timeout.
+     * @return This instance.
+     */
+    public SetupLib<T> setTimeout(long timeout, TimeUnit unit) {
+        Preconditions.checkArgument(timeout >= 0, "Timeout cannot be negative!");
+        this.timeout = unit.toNanos(timeout);
+        return changed();
+    }
+
+    /**
+     * Makes sessions of this setup persistent, keyed
+     * by name of the target class, or id of its definition.
+     *
+     * @param store The store, or null to disable persistence.
+     * @return This instance.
+     * @see #persistTo(SessionStore, String)
+     */
+    public SetupLib<T> persistTo(@Nullable SessionStore store) {
+        return persistTo(store, getDefaultSessionKey());
+    }
+
+    /**
+     * Makes sessions of this setup persistent. Progress is
+     * saved to the store after every step and session that
+     * was interrupted by leaving or restart is resumed when
+     * the player joins again. When the player leaves, future
+     * of the session fails with {@link SetupSuspendedException}
+     * and the resumed session has a new one.
+     *
+     * @param store The store, or null to disable persistence.
+     * @param key Key identifying this setup in the store.
+     * @return This instance.
+     */
+    public SetupLib<T> persistTo(@Nullable SessionStore store, String key) {
+        LISTENER.unregisterResumable(this);
+        this.sessionStore = store;
+        this.sessionKey = Preconditions.checkNotNull(key);
+        if(store != null || sessionTransport != null) {
+            LISTENER.registerResumable(this);
+        }
+        return changed();
+    }
+
+    /**
+     * Hands sessions of this setup off to other servers. When
+     * the player leaves, progress is sent using the transport and
+     * the session is resumed on server the player joins, if it has
+     * the same setup under the same session key. Progress of setup
+     * that differs there is rejected. Future of the session
+     * that was left fails with {@link SetupSuspendedException}.
+     *
+     * @param transport The transport, or null to disable handoff.
+     * @return This instance.
+     * @see #persistTo(SessionStore, String)
+     */
+    public SetupLib<T> handOffTo(@Nullable SessionTransport transport) {
+        LISTENER.unregisterResumable(this);
+        this.sessionTransport = transport;
+        if(sessionStore != null || transport != null) {
+            LISTENER.registerResumable(this);
+        }
+        return changed();
+    }
+
     public SetupLib<T> setDecorator(@Nullable SetupMessageDecorator<T> decorator) {
         this.decorators = new SetupMessageDecorator[] {
                 (SetupMessageDecorator<T>) (part, message) -> message
         };
         addDecorator(decorator);
-        return this;
+        return changed();
     }
 
     /**
@@ -175,184 +443,222 @@ public class SetupLib<T> implements Iterator<SetupPart<T>>, Cloneable {
         if(decorator != null) {
             decorators = (SetupMessageDecorator<T>[]) ArrayUtils.add(decorators, decorator);
         }
-        return this;
+        return changed();
     }
 
     public <A> SetupLib<T> registerCustomType(Class<A> customType, CustomTypeBuilder<A> builder) {
+        return registerAsyncCustomType(customType, (player, arg) -> {
+            try {
+                return CompletableFuture.completedFuture(builder.build(player, arg));
+            } catch(Exception e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        });
+    }
+
+    /**
+     * Registers custom type whose values are built asynchronously,
+     * like from database. Chat thread does not wait for the build.
+     *
+     * @param customType The type.
+     * @param builder Builder of the values.
+     * @return This instance.
+     * @see #setBuildTimeout(long, TimeUnit)
+     */
+    public <A> SetupLib<T> registerAsyncCustomType(Class<A> customType, AsyncCustomTypeBuilder<A> builder) {
         customTypes.put(customType, builder);
-        return this;
+        // Applicable parts may change with new type.
+        customTypeIndex = null;
+        schema = null;
+        return changed();
+    }
+
+    /**
+     * Sets time async custom type builders have to complete.
+     * Input whose value is not built in time is rejected with
+     * invalid format message of the part. Default is 5 seconds.
+     *
+     * @param timeout The timeout, 0 for no limit.
+     * @param unit Unit of the timeout.
+     * @return This instance.
+     */
+    public SetupLib<T> setBuildTimeout(long timeout, TimeUnit unit) {
+        Preconditions.checkArgument(timeout >= 0, "Timeout cannot be negative!");
+        this.buildTimeout = unit.toNanos(timeout);
+        return changed();
+    }
+
+    /**
+     * Sets limit of inputs each session handles, so players
+     * spamming the chat don't cost more than regular ones.
+     * By default, inputs are not limited.
+     *
+     * @param inputLimit The limit.
+     * @return This instance.
+     * @see InputLimit#of(int, double)
+     */
+    public SetupLib<T> setInputLimit(InputLimit inputLimit) {
+        this.inputLimit = Preconditions.checkNotNull(inputLimit);
+        return changed();
     }
 
     public SetupLib<T> onInput(InputHandler<T> inputHandler) {
-        this.inputHandlers.add(inputHandler);
-        return this;
+        this.inputHandlers.add(inputHandler, null);
+        return changed();
+    }
+
+    /**
+     * Adds input handler that runs only for inputs
+     * of provided parts.
+     *
+     * @param inputHandler The handler.
+     * @param parts Names of the parts, same as their fields.
+     * @return This instance.
+     */
+    public SetupLib<T> onInput(InputHandler<T> inputHandler, String... parts) {
+        this.inputHandlers.add(inputHandler, ImmutableSet.copyOf(parts));
+        return changed();
     }
 
     public SetupLib<T> onFinish(FinishHandler<T> finishHandler) {
         this.finishHandler = finishHandler;
-        return this;
+        return changed();
     }
 
     public SetupLib<T> onError(ErrorHandler<T> errorHandler) {
         this.errorHandler = errorHandler;
-        return this;
+        return changed();
     }
 
-    public CompletableFuture<T> start(Player player) {
-        // Initial checks.
-        Preconditions.checkState(hasNext(), "Cannot start empty setup!");
-        SetupLibListener listener = LISTENERS.get(plugin.getName());
-        Preconditions.checkState(listener != null, "Plugin is not initialized!");
-        checkSetup(target);
-
-        SetupLib<T> clone = clone();
-        try {
-            clone.doNext(player);
-        } catch (SetupException e) {
-            // Idk what happened here XD
-            throw new RuntimeException(e);
-        }
-        listener.register(player.getUniqueId(), clone);
-
-        // For better user experience, I save future to use.
-        CompletableFuture<T> future = new CompletableFuture<>();
-        clone.futures.add(future);
-        return future;
+    /**
+     * Sets executor the finish handler, error handler and
+     * futures are completed on.
+     *
+     * @param executor The executor.
+     * @return This instance.
+     */
+    public SetupLib<T> completeOn(Executor executor) {
+        this.completionExecutor = Preconditions.checkNotNull(executor);
+        return changed();
     }
 
-    protected void cancel() {
-        SetupLibListener listener = LISTENERS.get(plugin.getName());
-        if(listener != null) {
-            listener.handleSetupClose(this);
-        }
+    /**
+     * Completes setups on the main thread. Completions are
+     * queued and run together once per tick.
+     *
+     * @return This instance.
+     */
+    public SetupLib<T> completeSync() {
+        return completeOn(LISTENER.getMainThreadExecutor());
     }
 
     /**
-     * Makes root step task.
-     * This initially handles next part or finish handler.
+     * Completes setups directly on the thread that finished
+     * them, usually async chat thread. This is default.
      *
-     * @param player The player to handle this task for.
-     * @return true if this task finished setup, otherwise false.
-     *
-     * @throws SetupException If something occurred.
+     * @return This instance.
      */
-    protected boolean doNext(Player player) throws SetupException {
-        SetupPart<T> next = next();
-        if(next == null) {
-            T target;
-            try {
-                target = this.target.getConstructor().newInstance();
-            } catch(Exception e) {
-                // For now, only no args constructor is accepted.
-                throw new SetupException(this, e, "Cannot instantinate target!");
-            }
-
-            for(String fieldName : cache.keySet()) {
-                Object obj = cache.get(fieldName);
-                try {
-                    Field field = this.target.getDeclaredField(fieldName);
-                    field.setAccessible(true);
-                    field.set(target, obj);
+    public SetupLib<T> completeAsync() {
+        return completeOn(Runnable::run);
+    }
 
-                } catch (NoSuchFieldException | IllegalAccessException e) {
-                    throw new SetupException(this, e, String.format("Cannot fill field %s! (%s: %s)", fieldName, e.getClass().getSimpleName(), e.getMessage()));
-                }
-            }
+    public CompletableFuture<T> start(Player player) {
+        checkSetup(target);
+        return freeze().start(player);
+    }
 
-            finishHandler.onFinish(player, target);
+    /**
+     * Creates headless batch that fills targets from
+     * records instead of chat.
+     *
+     * @return The batch.
+     * @see SetupBatch
+     */
+    public SetupBatch<T> batch() {
+        checkSetup(target);
+        return freeze().batch();
+    }
 
-            // We can also have some futures to complete.
-            for(CompletableFuture<T> future : futures) {
-                future.complete(target);
-            }
-            return true;
-        } else {
-            current = next;
-            next.send(player);
-            return false;
+    /**
+     * Returns template of the current configuration.
+     * Template is made once and reused by every start
+     * until this setup is changed.
+     *
+     * @return The template.
+     */
+    public SetupTemplate<T> freeze() {
+        SetupTemplate<T> template = this.template;
+        if(template == null) {
+            SetupSchema<T> schema = getSchema();
+            template = new SetupTemplate<>(target,
+                    plugin,
+                    Arrays.copyOf(decorators, decorators.length),
+                    inputHandlers.copy(),
+                    ImmutableMap.copyOf(customTypes),
+                    getCustomTypeIndex(),
+                    finishHandler,
+                    errorHandler,
+                    completionExecutor,
+                    messages,
+                    resultBinder != null ? resultBinder : schema.getBinder(),
+                    timeout,
+                    buildTimeout,
+                    inputLimit,
+                    sessionStore,
+                    sessionTransport,
+                    sessionKey,
+                    messageSender,
+                    schema);
+            this.template = template;
         }
+        return template;
     }
 
-    @Override
-    public SetupPart<T> next() {
-        if(!hasNext()) {
-            return null;
-        }
-        for(Field field : getApplicableFields()) {
-            String fieldName = field.getName();
-            if(!cache.containsKey(fieldName)) {
-                return new SetupPart<>(this, fieldName);
-            }
-        }
-        return null;
+    /**
+     * Drops the template, so next start
+     * uses the changed configuration.
+     */
+    private SetupLib<T> changed() {
+        this.template = null;
+        return this;
     }
 
-    @Override
-    public boolean hasNext() {
-        for(Field field : getApplicableFields()) {
-            if(!cache.containsKey(field.getName())) {
-                return true;
-            }
-        }
-        return false;
+    public void setMessageSender(MessageSender messageSender) {
+        this.messageSender = messageSender;
+        changed();
     }
 
-    protected void handleError(Player player, Throwable err) {
-        try {
-            errorHandler.onError(player, err);
-        } catch(Exception e) {
-            e.printStackTrace();
+    @SuppressWarnings("unchecked")
+    protected SetupSchema<T> getSchema() {
+        SetupSchema<T> schema = this.schema;
+        if(schema == null) {
+            schema = definition != null
+                    ? (SetupSchema<T>) SetupSchema.of(definition, getCustomTypeIndex())
+                    : SetupSchema.of(target, getCustomTypeIndex());
+            this.schema = schema;
         }
-        for(CompletableFuture<T> future : futures) {
-            // Futures are not completed if error occurred.
-            future.completeExceptionally(err);
+        return schema;
+    }
+
+    protected CustomTypeIndex getCustomTypeIndex() {
+        CustomTypeIndex index = this.customTypeIndex;
+        if(index == null) {
+            index = CustomTypeIndex.of(customTypes.keySet());
+            this.customTypeIndex = index;
         }
+        return index;
     }
 
-    protected void send(Player player, String line) {
-        getMessageSender().accept(player, line);
+    private String getDefaultSessionKey() {
+        return definition != null
+                ? "definition:" + definition.getId()
+                : target.getName();
     }
 
     private void checkSetup(Class<T> target) {
-        boolean anyPart = false;
-        for(Field field : getApplicableFields()) {
-            if(field.isAnnotationPresent(Setup.class)) {
-                anyPart = true;
-                break;
-            }
-        }
-        if(!anyPart) {
+        if(getSchema().isEmpty()) {
             throw new NotSetupException(target);
         }
     }
 
-    private Field[] getApplicableFields() {
-        Field[] fields = new Field[0];
-        for(Field field : target.getDeclaredFields()) {
-            Class<?> type = Primitives.wrap(field.getType());
-            if(RequiredType.valueOf(type) != null
-            || customTypes.keySet()
-                    .stream()
-                    .anyMatch(t -> t.isAssignableFrom(type))) {
-                fields = (Field[]) ArrayUtils.add(fields, field);
-            }
-        }
-        return fields;
-    }
-
-    public SetupLib<T> clone() {
-        return new SetupLib<>(target,
-                plugin,
-                new HashMap<>(cache),
-                Arrays.copyOf(decorators, decorators.length),
-                inputHandlers,
-                customTypes,
-                finishHandler,
-                errorHandler,
-                placeholderMessageBuilder,
-                messageSender,
-                Collections.synchronizedList(new ArrayList<>()),
-                current);
-    }
-
 }
@@ -1,158 +1,605 @@
 package me.zort.setuplib;
 
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import me.zort.setuplib.exception.InputNotAcceptibleException;
 import me.zort.setuplib.exception.SetupException;
+import me.zort.setuplib.exception.SetupTimeoutException;
+import me.zort.setuplib.util.MainThreadExecutor;
+import me.zort.setuplib.util.TimerWheel;
+import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.AsyncPlayerChatEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.server.PluginDisableEvent;
 import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 
 import static org.bukkit.Bukkit.getServer;
 
+/**
+ * Single chat dispatcher shared by all plugins
+ * using this library.
+ * <p>
+ * Listener is registered in Bukkit only once, under
+ * one of the attached plugins, so every chat message
+ * costs only one session lookup.
+ */
 public class SetupLibListener implements Listener {
 
-    private final Plugin plugin;
-    private final Map<UUID, SetupLib<?>> setups;
+    private final Set<Plugin> plugins;
+    private final Map<UUID, SetupSession<?>> setups;
+    private final Map<Plugin, Set<SetupSession<?>>> setupsByPlugin;
+    private final Map<UUID, Conversation> conversations;
+    // Persistent setups by their session key.
+    private final Map<String, SetupLib<?>> resumables;
+    private final TimerWheel timers;
+    private final MainThreadExecutor mainThreadExecutor;
+    // Plugin this listener is registered in Bukkit with.
+    private volatile Plugin owner;
+    private BukkitTask timersTask;
 
-    protected SetupLibListener(Plugin plugin) {
-        this.plugin = plugin;
+    protected SetupLibListener() {
+        this.plugins = Sets.newConcurrentHashSet();
         this.setups = Maps.newConcurrentMap();
+        this.setupsByPlugin = Maps.newConcurrentMap();
+        this.conversations = Maps.newConcurrentMap();
+        this.resumables = Maps.newConcurrentMap();
+        // One tick resolution is enough for chat setups, expired
+        // tasks run user handlers, so they don't run on the timer task.
+        this.timers = new TimerWheel(50, TimeUnit.MILLISECONDS, ForkJoinPool.commonPool());
+        this.mainThreadExecutor = new MainThreadExecutor(() -> owner);
+        this.owner = null;
+    }
+
+    /**
+     * Attaches plugin to this dispatcher.
+     *
+     * @param plugin The plugin.
+     */
+    protected synchronized void attach(Plugin plugin) {
+        plugins.add(plugin);
+        if(owner == null) {
+            registerEvents(plugin);
+        }
+    }
+
+    /**
+     * Detaches plugin from this dispatcher and
+     * drops all its setups.
+     *
+     * @param plugin The plugin.
+     */
+    protected synchronized void detach(Plugin plugin) {
+        if(!plugins.remove(plugin)) {
+            return;
+        }
+        // Clearing instances by the plugin.
+        Set<SetupSession<?>> owned = setupsByPlugin.remove(plugin);
+        if(owned != null) {
+            for(SetupSession<?> setup : owned) {
+                setups.remove(setup.getPlayerId(), setup);
+                // Saved progress is kept, so session is resumed after reload.
+                setup.close(SetupMetrics.CloseReason.UNLOAD);
+            }
+        }
+        conversations.values().removeIf(convo -> {
+            if(!convo.getPlugin().equals(plugin)) {
+                return false;
+            }
+            convo.close(new SetupException(null, "Plugin disabled."));
+            return true;
+        });
+        resumables.values().removeIf(setup -> setup.getPlugin().equals(plugin));
+
+        if(plugin.equals(owner)) {
+            HandlerList.unregisterAll(this);
+            timersTask.cancel();
+            timersTask = null;
+            // Drain task of the plugin won't run anymore.
+            mainThreadExecutor.flush();
+            owner = null;
+            // Listener needs to be moved to another plugin.
+            for(Plugin other : plugins) {
+                if(other.isEnabled()) {
+                    registerEvents(other);
+                    break;
+                }
+            }
+        }
+    }
+
+    public boolean isAttached(Plugin plugin) {
+        return plugins.contains(plugin);
+    }
+
+    public Optional<Plugin> getAttached(String pluginName) {
+        return plugins.stream()
+                .filter(plugin -> plugin.getName().equals(pluginName))
+                .findFirst();
+    }
+
+    private void registerEvents(Plugin plugin) {
         getServer().getPluginManager().registerEvents(this, plugin);
+        // Single task drives timeouts of all setups.
+        timersTask = getServer().getScheduler().runTaskTimerAsynchronously(plugin, timers::advance, 1L, 1L);
+        owner = plugin;
+        mainThreadExecutor.resume();
     }
 
-    public void register(UUID uuid, SetupLib<?> setup) {
-        setups.put(uuid, setup);
+    protected TimerWheel getTimers() {
+        return timers;
+    }
+
+    /**
+     * Returns executor that runs tasks on main thread
+     * in batches, once per tick.
+     *
+     * @return The executor.
+     */
+    public MainThreadExecutor getMainThreadExecutor() {
+        return mainThreadExecutor;
+    }
+
+    public void register(UUID uuid, SetupSession<?> setup) {
+        setup.setPlayerId(uuid);
+        setupsByPlugin.computeIfAbsent(setup.getPlugin(), p -> Sets.newConcurrentHashSet()).add(setup);
+        SetupSession<?> previous = setups.put(uuid, setup);
+        if(previous != null && previous != setup) {
+            previous.close(SetupMetrics.CloseReason.CANCEL);
+            unindex(previous);
+        }
+        Conversation convo = conversations.remove(uuid);
+        if(convo != null) {
+            convo.cancel();
+        }
+    }
+
+    /**
+     * Registers the session unless the player already has
+     * a session or conversation, which may have started while
+     * the session was being restored.
+     *
+     * @param uuid The player.
+     * @param setup The session.
+     * @return true if the session was registered.
+     */
+    protected boolean registerIfIdle(UUID uuid, SetupSession<?> setup) {
+        if(conversations.containsKey(uuid)) {
+            return false;
+        }
+        setup.setPlayerId(uuid);
+        Set<SetupSession<?>> owned = setupsByPlugin.computeIfAbsent(setup.getPlugin(), p -> Sets.newConcurrentHashSet());
+        owned.add(setup);
+        if(setups.putIfAbsent(uuid, setup) != null) {
+            owned.remove(setup);
+            return false;
+        }
+        return true;
+    }
+
+    protected void register(UUID uuid, Conversation convo) {
+        Conversation previous = conversations.put(uuid, convo);
+        if(previous != null && previous != convo) {
+            previous.cancel();
+        }
+        SetupSession<?> setup = setups.remove(uuid);
+        if(setup != null) {
+            setup.close(SetupMetrics.CloseReason.CANCEL);
+            unindex(setup);
+        }
     }
 
-    public Optional<SetupLib<?>> getCurrent(Player player) {
+    protected void handleConversationClose(Conversation convo) {
+        // Player may already have another conversation.
+        conversations.remove(convo.getPlayer().getUniqueId(), convo);
+    }
+
+    protected void registerResumable(SetupLib<?> setup) {
+        resumables.put(setup.getSessionKey(), setup);
+    }
+
+    protected void unregisterResumable(SetupLib<?> setup) {
+        resumables.remove(setup.getSessionKey(), setup);
+    }
+
+    private void unindex(SetupSession<?> setup) {
+        setup.cancelTimeout();
+        Set<SetupSession<?>> owned = setupsByPlugin.get(setup.getPlugin());
+        if(owned != null) {
+            owned.remove(setup);
+        }
+    }
+
+    public Optional<SetupSession<?>> getCurrent(Player player) {
         return Optional.ofNullable(setups.get(player.getUniqueId()));
     }
 
     @EventHandler(priority = EventPriority.LOWEST)
     public void onChat(AsyncPlayerChatEvent e) {
         Player player = e.getPlayer();
-        Optional<SetupLib<?>> setupOptional = getCurrent(player);
+        Optional<SetupSession<?>> setupOptional = getCurrent(player);
         if(setupOptional.isPresent()) {
-            SetupLib<?> setup = setupOptional.get();
+            SetupSession<?> setup = setupOptional.get();
             e.setCancelled(true);
 
-            try {
-                SetupPart<?> current = setup.getCurrent();
-
-                // Pre-handle
-                for(SetupLib.InputHandler ih : setup.getInputHandlers()) {
-                    try {
-                        boolean b = ih.onInput(current, player, e.getMessage());
-                        if(!b) {
-                            // Input was cancelled.
-                            return;
-                        }
-                    } catch(Exception ex) {
-                        ex.printStackTrace();
-                        handleSetupClose(player, ex);
-                        return;
-                    }
-                }
+            // Inputs of one session never run concurrently.
+            String message = e.getMessage();
+            setup.execute(() -> receive(setup, player, message));
+        } else if(!conversations.isEmpty()) {
+            Conversation convo = conversations.get(player.getUniqueId());
+            if(convo != null) {
+                e.setCancelled(true);
+                // Only hands the input over, conversation runs on its own thread.
+                convo.offer(e.getMessage());
+            }
+        }
+    }
 
-                RequiredType type = current.getType();
-                if(type != null) {
-                    Object obj = type.parse(e.getMessage());
+    /**
+     * Passes input through the input limit of the session.
+     */
+    private <T> void receive(SetupSession<T> setup, Player player, String message) {
+        if(setup.hasCoalesced()) {
+            // Bucket may have refilled meanwhile, but input must
+            // not skip ahead of the kept one, it replaces it instead.
+            setup.coalesce(message);
+            return;
+        }
+        long wait = setup.acquireInput();
+        if(wait == 0) {
+            handleInput(setup, player, message);
+        } else if(!setup.getInputLimit().isCoalescing()) {
+            setup.drop();
+        } else if(setup.coalesce(message)) {
+            timers.schedule(() -> setup.execute(() -> handleCoalesced(setup, player)), wait, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private <T> void handleCoalesced(SetupSession<T> setup, Player player) {
+        long wait = setup.acquireInput();
+        if(wait != 0) {
+            // Timer fired early, newer input stays kept.
+            timers.schedule(() -> setup.execute(() -> handleCoalesced(setup, player)), wait, TimeUnit.NANOSECONDS);
+            return;
+        }
+        String message = setup.takeCoalesced();
+        if(message != null) {
+            handleInput(setup, player, message);
+        }
+    }
+
+    private <T> void handleInput(SetupSession<T> setup, Player player, String message) {
+        if(setup.isParked()) {
+            // Value of current part is still being built.
+            setup.defer(message);
+            return;
+        }
+        SetupMetrics metrics = SetupLib.getMetrics();
+        long start = System.nanoTime();
+        // When input handlers finished, 0 if they did not.
+        long handled = 0;
+        try {
+            SetupPart<T> current = setup.getCurrent();
 
-                    if(obj == null) {
-                        // Invalid format.
-                        for(String s : current.getAnnot().invalidFormat()) {
-                            setup.send(player, s);
-                        }
+            // Pre-handle
+            for(SetupLib.InputHandler<T> ih : setup.getInputHandlers(current)) {
+                try {
+                    boolean b = ih.onInput(current, player, message);
+                    if(!b) {
+                        // Input was cancelled.
                         return;
                     }
-                    current.set(obj);
-                } else {
-                    SetupLib.CustomTypeBuilder<?> builder = null;
-                    for(Class<?> customType : setup.getCustomTypes().keySet()) {
-                        if(customType.isAssignableFrom(current.getField().getType())) {
-                            builder = setup.getCustomTypes().get(customType);
-                            break;
-                        }
-                    }
+                } catch(Exception ex) {
+                    reportError(setup, ex);
+                    handleSetupClose(setup, player, ex);
+                    return;
+                }
+            }
+            handled = System.nanoTime();
 
-                    if(builder == null) {
-                        // Wot?
-                        throw new SetupException(setup, "No custom type builder found for " + current.getField().getType().getName());
-                    }
+            if(current.getSchemaPart().getParser() != null) {
+                ParseResult result = current.parse(message);
+                if(!result.isSuccess() && result != ParseResult.INCOMPLETE) {
+                    // Invalid format.
+                    reject(setup, player, current);
+                    return;
+                }
+                metrics.input(setup.getPlugin(), setup.getTarget(), current.getSchemaPart(), true);
+                if(result == ParseResult.INCOMPLETE) {
+                    // Element of collection, part waits for more.
+                    return;
+                }
+            } else {
+                if(!current.getSchemaPart().getValidator().validateInput(message).isSuccess()) {
+                    reject(setup, player, current);
+                    return;
+                }
+                Class<?> customType = current.getSchemaPart().getCustomType();
+                SetupLib.AsyncCustomTypeBuilder<?> builder = customType != null
+                        ? setup.getCustomTypeBuilder(customType)
+                        : null;
 
-                    try {
-                        current.set(builder.build(player, e.getMessage()));
-                    } catch (InputNotAcceptibleException ex) {
-                        // Custom error.
-                        for(String s : ex.getMessageLines()) {
-                            setup.send(player, s);
-                        }
-                    }
+                if(builder == null) {
+                    // Wot?
+                    throw new SetupException(setup, String.format("No custom type builder found for %s of part %s!",
+                            customType != null ? customType.getName() : "no type", current.getName()));
                 }
 
-                boolean finished;
+                CompletableFuture<?> future;
                 try {
-                    finished = setup.doNext(player);
-                } catch(Exception ex) {
-                    ex.printStackTrace();
-
-                    // We need to close the setup now.
-                    handleSetupClose(player, ex);
+                    future = builder.build(player, message);
+                } catch(RuntimeException ex) {
+                    // Builder failed before returning the future.
+                    reportError(setup, ex);
+                    handleSetupClose(setup, player, ex);
                     return;
                 }
-                if(finished) {
-                    handleSetupClose(player, null);
+                if(!future.isDone()) {
+                    park(setup, player, current, message, future);
+                    return;
+                }
+                if(!handleBuilt(setup, player, current, message, future)) {
+                    return;
                 }
-            } catch (SetupException ex) {
-                handleSetupClose(player, ex);
             }
+            next(setup, player);
+        } catch (SetupException ex) {
+            metrics.error(setup.getPlugin(), setup.getTarget(), ex);
+            handleSetupClose(setup, player, ex);
+        } finally {
+            long end = System.nanoTime();
+            metrics.inputHandled(setup.getPlugin(), setup.getTarget(), (handled != 0 ? handled : end) - start, end - start);
         }
     }
 
-    protected void handleSetupClose(SetupLib<?> setup) {
-        for(UUID uuid : new ArrayList<>(setups.keySet())) {
-            if(setups.get(uuid) == setup) {
-                setups.remove(uuid);
+    /**
+     * Parks the session until the custom type value is built.
+     * Completion and timeout are both passed through the session,
+     * so whichever comes first wins.
+     */
+    private void park(SetupSession<?> setup, Player player, SetupPart<?> current, String message, CompletableFuture<?> future) {
+        int ticket = setup.park();
+        long buildTimeout = setup.getBuildTimeout();
+        TimerWheel.Timeout timeout = buildTimeout > 0
+                ? timers.schedule(() -> setup.execute(() -> {
+                    if(setup.unpark(ticket)) {
+                        // Player can try again.
+                        reject(setup, player, current);
+                        next(setup, player);
+                        handleDeferred(setup, player);
+                    }
+                }), buildTimeout, TimeUnit.NANOSECONDS)
+                : null;
+        future.whenComplete((value, err) -> setup.execute(() -> {
+            if(timeout != null) {
+                timeout.cancel();
+            }
+            if(setup.unpark(ticket)) {
+                if(handleBuilt(setup, player, current, message, future)) {
+                    next(setup, player);
+                }
+                handleDeferred(setup, player);
+            }
+        }));
+    }
+
+    /**
+     * Stores built custom type value.
+     *
+     * @return False if the setup failed.
+     */
+    private boolean handleBuilt(SetupSession<?> setup, Player player, SetupPart<?> current, String message, CompletableFuture<?> future) {
+        Object value;
+        try {
+            value = future.join();
+        } catch(CompletionException | CancellationException ex) {
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null
+                    ? ex.getCause()
+                    : ex;
+            if(cause instanceof InputNotAcceptibleException) {
+                // Custom error.
+                SetupLib.getMetrics().input(setup.getPlugin(), setup.getTarget(), current.getSchemaPart(), false);
+                if(setup.acquireReply()) {
+                    setup.send(player, MessageTemplates.colorize(((InputNotAcceptibleException) cause).getMessageLines().toArray(new String[0])));
+                }
+                return true;
             }
+            reportError(setup, cause);
+            handleSetupClose(setup, player, cause);
+            return false;
         }
+        current.set(value, message);
+        SetupLib.getMetrics().input(setup.getPlugin(), setup.getTarget(), current.getSchemaPart(), true);
+        return true;
+    }
+
+    /**
+     * Rejects input of the part with its invalid format message.
+     */
+    private void reject(SetupSession<?> setup, Player player, SetupPart<?> part) {
+        SetupLib.getMetrics().input(setup.getPlugin(), setup.getTarget(), part.getSchemaPart(), false);
+        if(!setup.acquireReply()) {
+            // Player is spamming, reply was sent recently.
+            return;
+        }
+        setup.send(player, setup.getMessages().getInvalidFormat(part.getSchemaPart()));
+    }
+
+    protected void next(SetupSession<?> setup, Player player) {
+        boolean finished;
+        try {
+            finished = setup.doNext(player);
+        } catch(Exception ex) {
+            reportError(setup, ex);
+
+            // We need to close the setup now.
+            handleSetupClose(setup, player, ex);
+            return;
+        }
+        if(finished) {
+            handleSetupClose(setup, player, null);
+        } else {
+            setup.persist();
+        }
+    }
+
+    private void handleDeferred(SetupSession<?> setup, Player player) {
+        String message;
+        while(!setup.isParked() && !setup.isClosed() && (message = setup.pollDeferred()) != null) {
+            handleInput(setup, player, message);
+        }
+    }
+
+    private void reportError(SetupSession<?> setup, Throwable err) {
+        setup.getPlugin().getLogger().log(Level.SEVERE, String.format("Error in setup %s!", setup.getTarget().getName()), err);
+        SetupLib.getMetrics().error(setup.getPlugin(), setup.getTarget(), err);
+    }
+
+    protected void handleSetupClose(SetupSession<?> setup) {
+        handleSetupClose(setup, null, null);
     }
 
     protected void handleSetupClose(Player player, @Nullable Throwable err) {
-        SetupLib<?> setup = setups.remove(player.getUniqueId());
-        if(setup != null && err != null) {
+        handleSetupClose(player, err, SetupMetrics.CloseReason.ERROR);
+    }
+
+    protected void handleSetupClose(Player player, @Nullable Throwable err, SetupMetrics.CloseReason reason) {
+        SetupSession<?> setup = setups.remove(player.getUniqueId());
+        if(setup != null) {
+            unindex(setup);
+            if(err != null) {
+                setup.handleError(player, err, reason);
+            }
+        }
+    }
+
+    private void handleSetupClose(SetupSession<?> setup, @Nullable Player player, @Nullable Throwable err) {
+        // Player may already have another session, only this one is closed.
+        UUID uuid = setup.getPlayerId();
+        if(uuid != null && setups.remove(uuid, setup)) {
+            unindex(setup);
+        }
+        if(err != null) {
             setup.handleError(player, err);
         }
     }
 
+    protected void handleTimeout(SetupSession<?> setup) {
+        // Timeout must not interleave with input being processed.
+        setup.execute(() -> {
+            UUID uuid = setup.getPlayerId();
+            if(uuid != null && setups.remove(uuid, setup)) {
+                unindex(setup);
+                setup.handleError(Bukkit.getPlayer(uuid), new SetupTimeoutException(setup));
+            }
+        });
+    }
+
+    @EventHandler
+    public void onJoin(PlayerJoinEvent e) {
+        if(resumables.isEmpty()) {
+            return;
+        }
+        Player player = e.getPlayer();
+        Set<SetupLib.SessionStore> stores = Sets.newIdentityHashSet();
+        Set<SetupLib.SessionTransport> transports = Sets.newIdentityHashSet();
+        for(SetupLib<?> setup : resumables.values()) {
+            SetupLib.SessionStore store = setup.getSessionStore();
+            if(store != null && stores.add(store)) {
+                // Loading is async, player gets the prompt once it's done.
+                store.load(player.getUniqueId())
+                        .thenAcceptAsync(snapshot -> resume(player, store, snapshot))
+                        .exceptionally(ex -> {
+                            setup.getPlugin().getLogger().log(Level.SEVERE, String.format("Cannot load session of %s!", player.getName()), ex);
+                            return null;
+                        });
+            }
+            SetupLib.SessionTransport transport = setup.getSessionTransport();
+            if(transport != null && transports.add(transport)) {
+                transport.receive(player.getUniqueId())
+                        .thenAcceptAsync(session -> receive(player, transport, session))
+                        .exceptionally(ex -> {
+                            setup.getPlugin().getLogger().log(Level.SEVERE, String.format("Cannot receive session of %s!", player.getName()), ex);
+                            return null;
+                        });
+            }
+        }
+    }
+
+    private void receive(Player player, SetupLib.SessionTransport transport, @Nullable byte[] session) {
+        if(session == null) {
+            return;
+        }
+        SessionSnapshot snapshot;
+        try {
+            snapshot = SessionSnapshot.fromBytes(session);
+        } catch(IOException ex) {
+            throw new CompletionException(ex);
+        }
+        if(!player.isOnline() || setups.containsKey(player.getUniqueId())) {
+            return;
+        }
+        SetupLib<?> setup = resumables.get(snapshot.getKey());
+        if(setup == null || setup.getSessionTransport() != transport || !isAttached(setup.getPlugin())) {
+            return;
+        }
+        SetupTemplate<?> template = setup.freeze();
+        if(snapshot.getFingerprint() != template.getSchema().getFingerprint()) {
+            // Servers run different versions of the setup.
+            setup.getPlugin().getLogger().warning(String.format("Rejected session of %s handed off to setup %s, the setup differs on this server.",
+                    player.getName(), snapshot.getKey()));
+            return;
+        }
+        template.resume(player, snapshot);
+    }
+
+    private void resume(Player player, SetupLib.SessionStore store, @Nullable SessionSnapshot snapshot) {
+        if(snapshot == null || !player.isOnline() || setups.containsKey(player.getUniqueId())) {
+            return;
+        }
+        SetupLib<?> setup = resumables.get(snapshot.getKey());
+        if(setup != null && setup.getSessionStore() == store && isAttached(setup.getPlugin())) {
+            setup.freeze().resume(player, snapshot);
+        }
+    }
+
     @EventHandler
     public void onQuit(PlayerQuitEvent e) {
-        SetupLib<?> setup = setups.get(e.getPlayer().getUniqueId());
-        if(setup != null) {
-            handleSetupClose(e.getPlayer(), new SetupException(setup, "Player left."));
+        Conversation convo = conversations.remove(e.getPlayer().getUniqueId());
+        if(convo != null) {
+            convo.close(new SetupException(null, "Player left."));
+        }
+        SetupSession<?> setup = setups.get(e.getPlayer().getUniqueId());
+        if(setup != null && (setup.getSessionStore() != null || setup.getSessionTransport() != null)) {
+            // Progress stays saved or moves with the player, and is resumed on next join.
+            setup.handOff();
+            setup.suspend(e.getPlayer());
+            handleSetupClose(setup);
+        } else if(setup != null) {
+            handleSetupClose(e.getPlayer(), new SetupException(setup, "Player left."), SetupMetrics.CloseReason.QUIT);
         }
     }
 
     @EventHandler
     public void onDisable(PluginDisableEvent e) {
-        if(e.getPlugin().equals(plugin)) {
-            List<UUID> toRem = new ArrayList<>();
-            for(UUID uuid : setups.keySet()) {
-                if(setups.get(uuid).getPlugin().equals(plugin)) {
-                    toRem.add(uuid);
-                }
-            }
-
-            // Clearing instances by the plugin.
-            toRem.forEach(setups::remove);
-            SetupLib.clear(plugin);
+        if(isAttached(e.getPlugin())) {
+            SetupLib.clear(e.getPlugin());
         }
     }
 
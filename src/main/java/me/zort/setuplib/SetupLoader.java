@@ -1,7 +1,21 @@
 package me.zort.setuplib;
 
+import java.util.Map;
+
+/**
+ * Source of setups that are not compiled
+ * from annotated classes.
+ *
+ * @param <T> Type of targets.
+ */
 public interface SetupLoader<T> {
 
-    SetupPart<T>[] load();
+    /**
+     * Returns currently loaded setups, loading
+     * them on first call.
+     *
+     * @return The setups keyed by their id.
+     */
+    Map<String, SetupLib<T>> load();
 
 }
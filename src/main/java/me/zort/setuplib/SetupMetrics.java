@@ -0,0 +1,86 @@
+package me.zort.setuplib;
+
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Receiver of runtime events of all setups.
+ * <p>
+ * Methods are called directly from chat threads and
+ * from the thread finishing the setup, so implementations
+ * must be thread safe and must not block.
+ *
+ * @see SetupLib#setMetrics(SetupMetrics)
+ */
+public interface SetupMetrics {
+
+    SetupMetrics NOOP = new SetupMetrics() {};
+
+    /**
+     * Called when session is started or resumed.
+     *
+     * @param plugin Plugin owning the setup.
+     * @param target Target class of the setup.
+     */
+    default void sessionStarted(Plugin plugin, Class<?> target) {}
+
+    /**
+     * Called when session is closed for any reason.
+     *
+     * @param plugin Plugin owning the setup.
+     * @param target Target class of the setup.
+     * @param reason Why the session was closed.
+     * @param nanos Time since the session was started.
+     */
+    default void sessionClosed(Plugin plugin, Class<?> target, CloseReason reason, long nanos) {}
+
+    /**
+     * Called when player answers the part and setup
+     * moves to the next one.
+     *
+     * @param plugin Plugin owning the setup.
+     * @param target Target class of the setup.
+     * @param part The part.
+     * @param nanos Time since the part was sent to the player.
+     */
+    default void stepCompleted(Plugin plugin, Class<?> target, SetupSchema.Part part, long nanos) {}
+
+    /**
+     * Called for each input that reached the part.
+     *
+     * @param plugin Plugin owning the setup.
+     * @param target Target class of the setup.
+     * @param part Current part.
+     * @param accepted False if input had invalid format or was not accepted.
+     */
+    default void input(Plugin plugin, Class<?> target, SetupSchema.Part part, boolean accepted) {}
+
+    /**
+     * Called after input is processed.
+     *
+     * @param plugin Plugin owning the setup.
+     * @param target Target class of the setup.
+     * @param handlerNanos Time spent in {@link SetupLib.InputHandler}s.
+     * @param totalNanos Time spent processing the input.
+     */
+    default void inputHandled(Plugin plugin, Class<?> target, long handlerNanos, long totalNanos) {}
+
+    /**
+     * Called when unexpected error occurs in a setup.
+     *
+     * @param plugin Plugin owning the setup.
+     * @param target Target class of the setup.
+     * @param err The error.
+     */
+    default void error(Plugin plugin, Class<?> target, Throwable err) {}
+
+    enum CloseReason {
+        FINISH,
+        QUIT,
+        TIMEOUT,
+        CANCEL,
+        ERROR,
+        // Plugin was disabled.
+        UNLOAD
+    }
+
+}
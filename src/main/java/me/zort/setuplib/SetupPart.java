@@ -1,8 +1,8 @@
 package me.zort.setuplib;
 
+import com.google.common.base.Preconditions;
 import lombok.Getter;
 import me.zort.setuplib.annotation.Setup;
-import org.apache.commons.lang.ArrayUtils;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.Nullable;
 
@@ -11,60 +11,67 @@ import java.lang.reflect.Field;
 @Getter
 public class SetupPart<T> {
 
-    private final SetupLib<T> setup;
-    private final Field field;
+    private final SetupSession<T> session;
+    private final SetupSchema.Part schemaPart;
 
-    protected SetupPart(SetupLib<T> setup, String fieldName) {
-        this.setup = setup;
-        try {
-            this.field = setup.getTarget().getDeclaredField(fieldName);
-        } catch (NoSuchFieldException e) {
-            throw new RuntimeException(e);
-        }
+    protected SetupPart(SetupSession<T> session, SetupSchema.Part schemaPart) {
+        this.session = session;
+        this.schemaPart = schemaPart;
     }
 
     public void cancel() {
-        setup.cancel();
+        session.cancel();
     }
 
     public void set(Object obj) {
-        setup.getCache().put(field.getName(), obj);
+        session.set(schemaPart.getIndex(), obj);
+    }
+
+    /**
+     * Sets value of this part built from provided input.
+     * Input is saved with persistent sessions instead of
+     * the value.
+     *
+     * @param obj The value.
+     * @param input The input.
+     */
+    public void set(Object obj, String input) {
+        session.set(schemaPart.getIndex(), obj, input);
+    }
+
+    /**
+     * Parses input of this part's {@link RequiredType},
+     * enum or collection and stores it when valid.
+     *
+     * @param input The input.
+     * @return Result code.
+     */
+    public ParseResult parse(String input) {
+        Preconditions.checkState(schemaPart.getParser() != null, "Part %s is of custom type!", getName());
+        return session.parse(schemaPart.getIndex(), input);
     }
 
     public void send(Player player) {
-        Setup annot = field.getAnnotation(Setup.class);
-        String[] oldLines = annot.message();
-        String[] lines = new String[0];
-        for(String line : oldLines) {
-            if(line.startsWith("{") && line.endsWith("}") && line.length() > 2) {
-                lines = (String[]) ArrayUtils.addAll(lines,
-                        setup.getPlaceholderMessageBuilder()
-                                .build(line.substring(1, line.length() - 1))
-                                .toArray(new String[0])
-                );
-            } else {
-                lines = (String[]) ArrayUtils.add(lines, line);
-            }
-        }
-        for(SetupLib.SetupMessageDecorator<T> d : setup.getDecorators()) {
-            lines = d.modify(this, lines);
-        }
-        for(String line : lines) {
-            setup.send(player, line);
-        }
+        session.send(player, session.decorate(this));
+    }
+
+    // Null for setups loaded from definition.
+    @Nullable
+    public Field getField() {
+        return schemaPart.getField();
     }
 
     @Nullable
     public RequiredType getType() {
-        return RequiredType.valueOf(field.getType());
+        return schemaPart.getType();
     }
 
     public Setup getAnnot() {
-        return field.getAnnotation(Setup.class);
+        return schemaPart.getAnnot();
     }
 
     public String getName() {
-        return field.getName();
+        return schemaPart.getName();
     }
 
 }
@@ -0,0 +1,537 @@
+package me.zort.setuplib;
+
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Primitives;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import me.zort.setuplib.annotation.Nested;
+import me.zort.setuplib.annotation.Setup;
+import me.zort.setuplib.impl.MethodHandleResultBinder;
+import me.zort.setuplib.util.EnumLookup;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Precompiled representation of setup target.
+ * <p>
+ * Schema is built once per target class and set of registered
+ * custom types and then shared by all setups of that target,
+ * so no reflection is done while the setup is running. When the
+ * target has {@link GeneratedSchema}, no reflection is done at all.
+ *
+ * @param <T> Type of target.
+ */
+public final class SetupSchema<T> {
+
+    private static final ClassValue<Map<Set<Class<?>>, SetupSchema<?>>> SCHEMAS = new ClassValue<Map<Set<Class<?>>, SetupSchema<?>>>() {
+        @Override
+        protected Map<Set<Class<?>>, SetupSchema<?>> computeValue(Class<?> type) {
+            return Maps.newConcurrentMap();
+        }
+    };
+
+    // Not bound to any plugin, schemas are shared.
+    private static final Logger LOGGER = Logger.getLogger(SetupSchema.class.getName());
+    // Generated schemas of targets, looked up once per target.
+    private static final ClassValue<Optional<GeneratedSchema<?>>> GENERATED = new ClassValue<Optional<GeneratedSchema<?>>>() {
+        @Override
+        protected Optional<GeneratedSchema<?>> computeValue(Class<?> type) {
+            try {
+                Class<?> generated = Class.forName(type.getName() + GeneratedSchema.SUFFIX, true, type.getClassLoader());
+                if(GeneratedSchema.class.isAssignableFrom(generated)) {
+                    return Optional.of((GeneratedSchema<?>) generated.getDeclaredConstructor().newInstance());
+                }
+            } catch(ClassNotFoundException ignored) {
+                // Processor was not used.
+            } catch(ReflectiveOperationException | LinkageError e) {
+                LOGGER.log(Level.WARNING, String.format("Cannot load generated schema of %s, reflection is used instead.", type.getName()), e);
+            }
+            return Optional.empty();
+        }
+    };
+
+    @Getter
+    private final Class<T> target;
+    @Getter(AccessLevel.NONE)
+    private final Part[] parts;
+    @Getter(AccessLevel.NONE)
+    private final Group[] groups;
+    @Getter(AccessLevel.NONE)
+    private final RequiredType[] slotTypes;
+    // Changes when parts or their types change.
+    @Getter
+    private final int fingerprint;
+    // Compiled on first use, unless generated.
+    @Getter(AccessLevel.NONE)
+    private volatile SetupLib.ResultBinder<T> binder;
+
+    private SetupSchema(Class<T> target, Part[] parts, Group[] groups, int fingerprint, @Nullable SetupLib.ResultBinder<T> binder) {
+        this.target = target;
+        this.parts = parts;
+        this.groups = groups;
+        this.slotTypes = new RequiredType[parts.length];
+        for(int i = 0; i < slotTypes.length; i++) {
+            slotTypes[i] = parts[i].getType();
+        }
+        this.fingerprint = fingerprint;
+        this.binder = binder;
+    }
+
+    private static <T> SetupSchema<T> reflect(Class<T> target, CustomTypeIndex customTypes) {
+        List<Part> parts = new ArrayList<>();
+        List<Group> groups = new ArrayList<>();
+        collect(target, -1, "", customTypes, parts, groups, new HashSet<>(Collections.singleton(target)));
+        int fingerprint = target.getName().hashCode();
+        for(Part part : parts) {
+            fingerprint = fingerprint(fingerprint, part.getName(), part.getField().getGenericType().getTypeName());
+        }
+        return new SetupSchema<>(target, parts.toArray(new Part[0]), groups.toArray(new Group[0]), fingerprint, null);
+    }
+
+    /**
+     * Builds schema from generated part table, so neither
+     * fields nor annotations of the target are read.
+     *
+     * @return The schema, or null if some part has custom type
+     * that is not registered, reflection skips such parts.
+     */
+    @Nullable
+    private static <T> SetupSchema<T> generated(GeneratedSchema<T> generated, CustomTypeIndex customTypes) {
+        List<SetupDefinition.Step> steps = generated.getSteps();
+        Part[] parts = new Part[steps.size()];
+        // Same as reflection, so saved sessions survive switching between them.
+        int fingerprint = generated.getTarget().getName().hashCode();
+        for(int i = 0; i < parts.length; i++) {
+            SetupDefinition.Step step = steps.get(i);
+            parts[i] = resolve(i, -1, step.name(), null, generated.getTarget(), step.getType(), step.getElementType(), step, customTypes);
+            if(parts[i] == null) {
+                return null;
+            }
+            fingerprint = fingerprint(fingerprint, step.name(), step.getTypeName());
+        }
+        return new SetupSchema<>(generated.getTarget(), parts, new Group[0], fingerprint, generated::bind);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SetupSchema<Map<String, Object>> define(SetupDefinition definition, CustomTypeIndex customTypes) {
+        List<SetupDefinition.Step> steps = definition.getSteps();
+        Part[] parts = new Part[steps.size()];
+        int fingerprint = definition.getId().hashCode();
+        for(int i = 0; i < parts.length; i++) {
+            SetupDefinition.Step step = steps.get(i);
+            parts[i] = resolve(i, -1, step.name(), null, null, step.getType(), step.getElementType(), step, customTypes);
+            if(parts[i] == null) {
+                throw new IllegalArgumentException(String.format("Step %s of setup %s has unsupported type %s!",
+                        step.name(), definition.getId(), step.getType().getName()));
+            }
+            fingerprint = fingerprint(fingerprint, step.name(), step.getTypeName());
+        }
+        return new SetupSchema<>((Class<Map<String, Object>>) (Class<?>) Map.class, parts, new Group[0], fingerprint, mapBinder(parts));
+    }
+
+    private static int fingerprint(int fingerprint, String name, String typeName) {
+        fingerprint = 31 * fingerprint + name.hashCode();
+        return 31 * fingerprint + typeName.hashCode();
+    }
+
+    /**
+     * Collects parts of provided type, nested objects
+     * are flattened in place of their field.
+     */
+    private static void collect(Class<?> type,
+                                int owner,
+                                String prefix,
+                                CustomTypeIndex customTypes,
+                                List<Part> parts,
+                                List<Group> groups,
+                                Set<Class<?>> path) {
+        for(Field field : type.getDeclaredFields()) {
+            if(Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+            if(field.isAnnotationPresent(Nested.class)) {
+                Class<?> nestedType = field.getType();
+                if(!path.add(nestedType)) {
+                    throw new IllegalStateException(String.format("Nested setup %s of %s contains itself!", nestedType.getName(), type.getName()));
+                }
+                field.setAccessible(true);
+                Group group = new Group(groups.size(), owner, field);
+                groups.add(group);
+                collect(nestedType, group.getIndex(), prefix + field.getName() + ".", customTypes, parts, groups, path);
+                path.remove(nestedType);
+                continue;
+            }
+            Setup annot = field.getAnnotation(Setup.class);
+            if(annot == null) {
+                continue;
+            }
+            Part part = resolve(parts.size(), owner, prefix + field.getName(), field, null, field.getType(), elementType(field), annot, customTypes);
+            if(part == null) {
+                // Not supported type, same as before.
+                continue;
+            }
+            field.setAccessible(true);
+            parts.add(part);
+        }
+    }
+
+    @Nullable
+    private static Class<?> elementType(Field field) {
+        if(!(field.getGenericType() instanceof ParameterizedType)) {
+            return null;
+        }
+        Type[] arguments = ((ParameterizedType) field.getGenericType()).getActualTypeArguments();
+        return arguments.length == 1 && arguments[0] instanceof Class
+                ? (Class<?>) arguments[0]
+                : null;
+    }
+
+    @Nullable
+    private static Part resolve(int index,
+                                int owner,
+                                String name,
+                                @Nullable Field field,
+                                @Nullable Class<?> root,
+                                Class<?> valueType,
+                                @Nullable Class<?> elementType,
+                                Setup annot,
+                                CustomTypeIndex customTypes) {
+        Class<?> type = Primitives.wrap(valueType);
+        RequiredType requiredType = RequiredType.valueOf(type);
+        if(requiredType != null) {
+            return new Part(index, owner, name, field, root, annot, requiredType, null, requiredType.getParser(), false,
+                    PartValidator.compile(annot, requiredType));
+        }
+        Class<?> customType = customTypes.resolve(type);
+        if(customType != null) {
+            return new Part(index, owner, name, field, root, annot, null, customType, null, false,
+                    PartValidator.compile(annot, null));
+        }
+        if(type.isEnum()) {
+            return new Part(index, owner, name, field, root, annot, null, null, enumParser(type), false,
+                    PartValidator.compile(annot, null));
+        }
+        if(Collection.class.isAssignableFrom(type)) {
+            RequiredType.TypeParser parser = collectionParser(type, elementType, annot);
+            return parser != null
+                    ? new Part(index, owner, name, field, root, annot, null, null, parser, true, PartValidator.none())
+                    : null;
+        }
+        return null;
+    }
+
+    private static RequiredType.TypeParser enumParser(Class<?> type) {
+        Map<String, Enum<?>> constants = EnumLookup.of(type);
+        return (arg, slots, index) -> {
+            Enum<?> constant = constants.get(arg.toLowerCase(Locale.ROOT));
+            if(constant == null) {
+                return ParseResult.INVALID_FORMAT;
+            }
+            slots.setObject(index, constant);
+            return ParseResult.SUCCESS;
+        };
+    }
+
+    /**
+     * Makes parser adding each input to the collection
+     * until the terminator comes. Constraints of the part
+     * apply to each element.
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    private static RequiredType.TypeParser collectionParser(Class<?> type, @Nullable Class<?> elementClass, Setup annot) {
+        Supplier<Collection<Object>> factory;
+        if(type.isAssignableFrom(ArrayList.class)) {
+            factory = ArrayList::new;
+        } else if(type.isAssignableFrom(LinkedHashSet.class)) {
+            factory = LinkedHashSet::new;
+        } else {
+            return null;
+        }
+        if(elementClass == null) {
+            return null;
+        }
+        RequiredType elementType = RequiredType.valueOf(elementClass);
+        RequiredType.TypeParser elementParser;
+        if(elementType != null) {
+            elementParser = elementType.getParser();
+        } else if(elementClass.isEnum()) {
+            elementParser = enumParser(elementClass);
+        } else {
+            return null;
+        }
+        RequiredType[] elementSlots = {elementType};
+        PartValidator validator = PartValidator.compile(annot, elementType);
+        String terminator = annot.terminator();
+        return (arg, slots, index) -> {
+            Collection<Object> values = (Collection<Object>) slots.get(index);
+            if(arg.equalsIgnoreCase(terminator)) {
+                if(values == null) {
+                    slots.setObject(index, factory.get());
+                }
+                return ParseResult.SUCCESS;
+            }
+            ParseResult result = validator.validateInput(arg);
+            if(!result.isSuccess()) {
+                return result;
+            }
+            ValueSlots element = new ValueSlots(elementSlots);
+            result = elementParser.parse(arg, element, 0);
+            if(result.isSuccess()) {
+                result = validator.validateValue(element, 0);
+            }
+            if(!result.isSuccess()) {
+                return result;
+            }
+            if(values == null) {
+                values = factory.get();
+                slots.setObject(index, values);
+            }
+            values.add(element.get(0));
+            return ParseResult.INCOMPLETE;
+        };
+    }
+
+    /**
+     * Returns cached schema for provided target and custom
+     * types, or builds new one if there is none yet.
+     *
+     * @param target Target of the setup.
+     * @param customTypes Index of currently registered custom types.
+     * @return The schema.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> SetupSchema<T> of(Class<T> target, CustomTypeIndex customTypes) {
+        Map<Set<Class<?>>, SetupSchema<?>> schemas = SCHEMAS.get(target);
+        SetupSchema<?> schema = schemas.get(customTypes.getTypes());
+        if(schema == null) {
+            schema = schemas.computeIfAbsent(customTypes.getTypes(), k -> {
+                GeneratedSchema<T> generated = (GeneratedSchema<T>) GENERATED.get(target).orElse(null);
+                SetupSchema<T> compiled = generated != null
+                        ? generated(generated, customTypes)
+                        : null;
+                return compiled != null
+                        ? compiled
+                        : reflect(target, customTypes);
+            });
+        }
+        return (SetupSchema<T>) schema;
+    }
+
+    /**
+     * Compiles schema of setup loaded from definition.
+     * Targets of such setups are maps of values keyed
+     * by name of their step, in order of the steps.
+     *
+     * @param definition The definition.
+     * @param customTypes Index of currently registered custom types.
+     * @return The schema.
+     * @throws IllegalArgumentException If type of some step is not supported.
+     */
+    public static SetupSchema<Map<String, Object>> of(SetupDefinition definition, CustomTypeIndex customTypes) {
+        return define(definition, customTypes);
+    }
+
+    private static SetupLib.ResultBinder<Map<String, Object>> mapBinder(Part[] parts) {
+        return values -> {
+            Map<String, Object> map = new LinkedHashMap<>((int) (parts.length / 0.75f) + 1);
+            for(Part part : parts) {
+                map.put(part.getName(), values.get(part.getIndex()));
+            }
+            return map;
+        };
+    }
+
+    /**
+     * Returns default binder of this schema.
+     * Binder is compiled on first use and then reused
+     * by every setup of this schema.
+     *
+     * @return The binder.
+     */
+    public SetupLib.ResultBinder<T> getBinder() {
+        SetupLib.ResultBinder<T> binder = this.binder;
+        if(binder == null) {
+            try {
+                binder = MethodHandleResultBinder.compile(this);
+            } catch(ReflectiveOperationException e) {
+                // Error is reported when the setup finishes.
+                binder = values -> {
+                    throw e;
+                };
+            }
+            this.binder = binder;
+        }
+        return binder;
+    }
+
+    /**
+     * Creates empty value slots for one setup
+     * of this schema.
+     *
+     * @return New slots.
+     */
+    public ValueSlots newSlots() {
+        return new ValueSlots(slotTypes);
+    }
+
+    public Part getPart(int index) {
+        return parts[index];
+    }
+
+    public int size() {
+        return parts.length;
+    }
+
+    /**
+     * Returns nested object of the schema. Owners
+     * always come before objects nested in them.
+     *
+     * @param index Index of the nested object.
+     * @return The nested object.
+     */
+    public Group getGroup(int index) {
+        return groups[index];
+    }
+
+    public int getGroupCount() {
+        return groups.length;
+    }
+
+    public boolean isEmpty() {
+        return parts.length == 0;
+    }
+
+    /**
+     * Single compiled part of the schema.
+     */
+    @Getter
+    public static final class Part {
+
+        private final int index;
+        // Index of nested object the field belongs to, -1 for the target.
+        private final int owner;
+        private final String name;
+        // Null for parts loaded from definition, looked up on first use for generated schema.
+        @Getter(AccessLevel.NONE)
+        @Nullable
+        private volatile Field field;
+        // Target of generated schema the field is looked up in.
+        @Getter(AccessLevel.NONE)
+        @Nullable
+        private final Class<?> root;
+        private final Setup annot;
+        @Nullable
+        private final RequiredType type;
+        @Nullable
+        private final Class<?> customType;
+        // Null for custom types.
+        @Nullable
+        private final RequiredType.TypeParser parser;
+        private final boolean collection;
+        private final PartValidator validator;
+
+        private Part(int index,
+                     int owner,
+                     String name,
+                     @Nullable Field field,
+                     @Nullable Class<?> root,
+                     Setup annot,
+                     @Nullable RequiredType type,
+                     @Nullable Class<?> customType,
+                     @Nullable RequiredType.TypeParser parser,
+                     boolean collection,
+                     PartValidator validator) {
+            this.index = index;
+            this.owner = owner;
+            this.name = name;
+            this.field = field;
+            this.root = root;
+            this.annot = annot;
+            this.type = type;
+            this.customType = customType;
+            this.parser = parser;
+            this.collection = collection;
+            this.validator = validator;
+        }
+
+        /**
+         * Field of this part, null for parts loaded from definition.
+         * Generated schema does not read fields, so its parts look
+         * up the field by name when it's first asked for.
+         */
+        @Nullable
+        public Field getField() {
+            Field field = this.field;
+            if(field == null && root != null) {
+                field = lookupField(root, name);
+                field.setAccessible(true);
+                this.field = field;
+            }
+            return field;
+        }
+
+        private static Field lookupField(Class<?> root, String name) {
+            Class<?> type = root;
+            Field field = null;
+            for(String segment : name.split("\\.")) {
+                try {
+                    field = type.getDeclaredField(segment);
+                } catch(NoSuchFieldException e) {
+                    throw new IllegalStateException(String.format("Field %s of %s not found, generated schema is stale!", name, root.getName()), e);
+                }
+                type = field.getType();
+            }
+            return field;
+        }
+
+        /**
+         * Parses and validates input into slot of this part.
+         * Value out of range does not replace the previous one.
+         *
+         * @param input The input.
+         * @param values Slots of the setup.
+         * @return Result code.
+         */
+        public ParseResult parse(String input, ValueSlots values) {
+            ParseResult result = validator.validateInput(input);
+            if(!result.isSuccess()) {
+                return result;
+            }
+            long previous = values.getRaw(index);
+            result = parser.parse(input, values, index);
+            if(result.isSuccess()) {
+                result = validator.validateValue(values, index);
+                if(!result.isSuccess()) {
+                    values.setLong(index, previous);
+                }
+            }
+            return result;
+        }
+
+    }
+
+    /**
+     * Nested object of the schema.
+     */
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    @Getter
+    public static final class Group {
+
+        private final int index;
+        // Index of owning nested object, -1 for the target.
+        private final int owner;
+        private final Field field;
+
+    }
+
+}
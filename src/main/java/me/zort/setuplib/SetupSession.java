@@ -0,0 +1,550 @@
+package me.zort.setuplib;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import me.zort.setuplib.exception.SetupException;
+import me.zort.setuplib.exception.SetupSuspendedException;
+import me.zort.setuplib.exception.SetupTimeoutException;
+import me.zort.setuplib.util.TimerWheel;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Running setup of one player.
+ * <p>
+ * Session holds only its progress and the future of
+ * the result, everything else is read from the shared
+ * {@link SetupTemplate} it was started from.
+ *
+ * @param <T> Type of target.
+ */
+public final class SetupSession<T> implements Iterator<SetupPart<T>> {
+
+    @Getter
+    private final SetupTemplate<T> template;
+    private final SessionState<T> state;
+    @Getter(AccessLevel.PROTECTED)
+    private final CompletableFuture<T> future;
+
+    protected SetupSession(SetupTemplate<T> template) {
+        this.template = template;
+        this.state = new SessionState<>(template.getSchema().newSlots());
+        this.future = new CompletableFuture<>();
+        if(template.getTimeout() > 0) {
+            state.setDeadline(System.nanoTime() + template.getTimeout());
+        }
+    }
+
+    public Class<T> getTarget() {
+        return template.getTarget();
+    }
+
+    public Plugin getPlugin() {
+        return template.getPlugin();
+    }
+
+    /**
+     * Restores progress saved in snapshot, up to first
+     * part whose input is no longer acceptable.
+     *
+     * @param snapshot Saved progress.
+     * @param built Custom type values built from saved inputs.
+     */
+    protected void restore(SessionSnapshot snapshot, CompletableFuture<?>[] built) {
+        SetupSchema<T> schema = getSchema();
+        ValueSlots values = state.getValues();
+        int step = 0;
+        for(; step < snapshot.getStep(); step++) {
+            SetupSchema.Part part = schema.getPart(step);
+            String input = snapshot.getInputs()[step];
+            if(values.isPrimitive(step)) {
+                values.setLong(step, snapshot.getPrimitives()[step]);
+                // Constraints may be stricter than when it was saved.
+                if(!part.getValidator().validateValue(values, step).isSuccess()) {
+                    values.setLong(step, 0);
+                    break;
+                }
+            } else if(part.getType() != null) {
+                if(input != null && !part.parse(input, values).isSuccess()) {
+                    break;
+                }
+            } else if(part.getParser() != null) {
+                if(!replay(part, input)) {
+                    break;
+                }
+            } else if(built[step].isDone() && !built[step].isCompletedExceptionally()) {
+                values.setObject(step, built[step].join());
+                state.setInput(step, input);
+            } else {
+                // Input is no longer acceptable.
+                break;
+            }
+        }
+        state.setStep(step);
+    }
+
+    protected void cancel() {
+        if(close(SetupMetrics.CloseReason.CANCEL)) {
+            unpersist();
+        }
+        SetupLib.getListener().handleSetupClose(this);
+    }
+
+    /**
+     * Closes this session. Inputs that are still queued
+     * are dropped.
+     *
+     * @param reason Why the session is closed.
+     * @return True if the session was closed by this call.
+     */
+    protected boolean close(SetupMetrics.CloseReason reason) {
+        if(!state.close()) {
+            return false;
+        }
+        cancelTimeout();
+        SetupLib.getMetrics().sessionClosed(getPlugin(), getTarget(), reason, System.nanoTime() - state.getStartNanos());
+        return true;
+    }
+
+    /**
+     * Runs task of this session, like processing of input.
+     * Tasks are run one at a time in order they came.
+     *
+     * @param task The task.
+     */
+    protected void execute(Runnable task) {
+        state.execute(task);
+    }
+
+    /**
+     * Saves progress of this session, if the
+     * setup is persistent.
+     */
+    protected void persist() {
+        UUID playerId = state.getPlayerId();
+        SetupLib.SessionStore store = template.getSessionStore();
+        if(store != null && playerId != null && !state.isClosed()) {
+            store.save(playerId, snapshot());
+        }
+    }
+
+    /**
+     * Sends progress of this session to other servers, if
+     * the setup is handed off. Progress is taken now, but
+     * encoded and sent off the calling thread.
+     */
+    protected void handOff() {
+        UUID playerId = state.getPlayerId();
+        SetupLib.SessionTransport transport = template.getSessionTransport();
+        if(transport == null || playerId == null || state.isClosed()) {
+            return;
+        }
+        SessionSnapshot snapshot = snapshot();
+        CompletableFuture.runAsync(() -> {
+            try {
+                transport.send(playerId, snapshot.toBytes());
+            } catch(IOException e) {
+                throw new CompletionException(e);
+            }
+        }).exceptionally(ex -> {
+            getPlugin().getLogger().log(Level.WARNING, String.format("Cannot hand off session of %s!", getTarget().getName()), ex);
+            return null;
+        });
+    }
+
+    private void unpersist() {
+        UUID playerId = state.getPlayerId();
+        SetupLib.SessionStore store = template.getSessionStore();
+        if(store != null && playerId != null) {
+            store.remove(playerId);
+        }
+    }
+
+    private SessionSnapshot snapshot() {
+        SetupSchema<T> schema = getSchema();
+        ValueSlots values = state.getValues();
+        int step = state.getStep();
+        long[] primitives = new long[step];
+        String[] inputs = new String[step];
+        for(int i = 0; i < step; i++) {
+            if(values.isPrimitive(i)) {
+                primitives[i] = values.getRaw(i);
+            } else if(schema.getPart(i).getType() != null) {
+                inputs[i] = (String) values.get(i);
+            } else if((inputs[i] = state.getInput(i)) == null) {
+                // Value was set directly, it cannot be restored.
+                step = i;
+                break;
+            }
+        }
+        return new SessionSnapshot(template.getSessionKey(), schema.getFingerprint(), step,
+                Arrays.copyOf(primitives, step), Arrays.copyOf(inputs, step));
+    }
+
+    /**
+     * Makes root step task.
+     * This initially handles next part or finish handler.
+     *
+     * @param player The player to handle this task for.
+     * @return true if this task finished setup, otherwise false.
+     *
+     * @throws SetupException If something occurred.
+     */
+    protected boolean doNext(Player player) throws SetupException {
+        SetupPart<T> next = next();
+        if(next == null) {
+            T target;
+            try {
+                target = template.getResultBinder().bind(state.getValues());
+            } catch(Exception e) {
+                throw new SetupException(this, e, String.format("Cannot instantinate target! (%s: %s)", e.getClass().getSimpleName(), e.getMessage()));
+            }
+            completeStep();
+            if(!close(SetupMetrics.CloseReason.FINISH)) {
+                // Setup was closed in the meantime, timed out for example.
+                return true;
+            }
+            unpersist();
+
+            template.getCompletionExecutor().execute(() -> {
+                template.getFinishHandler().onFinish(player, target);
+                future.complete(target);
+            });
+            return true;
+        } else {
+            SetupPart<T> current = state.getCurrent();
+            if(current == null || current.getSchemaPart() != next.getSchemaPart()) {
+                completeStep();
+                state.setStepNanos(System.nanoTime());
+            }
+            state.setCurrent(next);
+            scheduleTimeout(next);
+            next.send(player);
+            return false;
+        }
+    }
+
+    private void completeStep() {
+        SetupPart<T> current = state.getCurrent();
+        if(current != null) {
+            SetupLib.getMetrics().stepCompleted(getPlugin(), getTarget(), current.getSchemaPart(), System.nanoTime() - state.getStepNanos());
+        }
+    }
+
+    private void scheduleTimeout(SetupPart<T> part) {
+        cancelTimeout();
+        long delay = TimeUnit.SECONDS.toNanos(part.getAnnot().timeout());
+        long deadline = state.getDeadline();
+        if(deadline != 0) {
+            long remaining = Math.max(deadline - System.nanoTime(), 0);
+            delay = delay > 0
+                    ? Math.min(delay, remaining)
+                    : remaining;
+        }
+        if(delay > 0 || deadline != 0) {
+            SetupLibListener listener = SetupLib.getListener();
+            state.setTimeoutTask(listener.getTimers().schedule(() -> listener.handleTimeout(this), delay, TimeUnit.NANOSECONDS));
+        }
+    }
+
+    protected void cancelTimeout() {
+        TimerWheel.Timeout timeoutTask = state.getTimeoutTask();
+        if(timeoutTask != null) {
+            timeoutTask.cancel();
+            state.setTimeoutTask(null);
+        }
+    }
+
+    @Override
+    public SetupPart<T> next() {
+        if(!hasNext()) {
+            return null;
+        }
+        return new SetupPart<>(this, getSchema().getPart(state.getStep()));
+    }
+
+    @Override
+    public boolean hasNext() {
+        return state.getStep() < getSchema().size();
+    }
+
+    protected void handleError(Player player, Throwable err) {
+        handleError(player, err, err instanceof SetupTimeoutException
+                ? SetupMetrics.CloseReason.TIMEOUT
+                : SetupMetrics.CloseReason.ERROR);
+    }
+
+    protected void handleError(Player player, Throwable err, SetupMetrics.CloseReason reason) {
+        if(!close(reason)) {
+            // Setup is already finished or failed.
+            return;
+        }
+        unpersist();
+        fail(player, err);
+    }
+
+    /**
+     * Closes session of player that left, its progress is
+     * kept and resumed in new session on next join.
+     *
+     * @param player The player.
+     */
+    protected void suspend(Player player) {
+        if(close(SetupMetrics.CloseReason.QUIT)) {
+            fail(player, new SetupSuspendedException(this));
+        }
+    }
+
+    private void fail(Player player, Throwable err) {
+        template.getCompletionExecutor().execute(() -> {
+            try {
+                template.getErrorHandler().onError(player, err);
+            } catch(Exception e) {
+                getPlugin().getLogger().log(Level.SEVERE, String.format("Error handler of setup %s failed!", getTarget().getName()), e);
+                SetupLib.getMetrics().error(getPlugin(), getTarget(), e);
+            }
+            // Future is not completed if error occurred.
+            future.completeExceptionally(err);
+        });
+    }
+
+    protected void send(Player player, String[] lines) {
+        template.send(player, lines);
+    }
+
+    protected String[] decorate(SetupPart<T> part) {
+        return template.decorate(part);
+    }
+
+    /**
+     * Stores value of the part with provided index.
+     * When the part is current one, setup moves to the
+     * next step.
+     *
+     * @param index Index of the part in schema.
+     * @param obj The value.
+     */
+    protected void set(int index, Object obj) {
+        state.getValues().set(index, obj);
+        state.setInput(index, null);
+        advance(index);
+    }
+
+    /**
+     * Stores value of custom type part together with input
+     * it was built from, so it can be built again when the
+     * session is resumed.
+     *
+     * @param index Index of the part in schema.
+     * @param obj The value.
+     * @param input The input.
+     */
+    protected void set(int index, Object obj, String input) {
+        state.getValues().set(index, obj);
+        state.setInput(index, input);
+        advance(index);
+    }
+
+    /**
+     * Parses input directly into value slot of the part
+     * with provided index. When parsed successfully and
+     * the part is current one, setup moves to the next step.
+     * Collection parts return {@link ParseResult#INCOMPLETE}
+     * until their terminator comes.
+     *
+     * @param index Index of the part in schema.
+     * @param input The input.
+     * @return Result code.
+     */
+    protected ParseResult parse(int index, String input) {
+        SetupSchema.Part part = getSchema().getPart(index);
+        ParseResult result = part.parse(input, state.getValues());
+        if(result.isSuccess() || result == ParseResult.INCOMPLETE) {
+            if(part.isCollection()) {
+                // Every element is kept, so the collection can be restored.
+                String inputs = state.getInput(index);
+                state.setInput(index, inputs != null ? inputs + "\n" + input : input);
+            } else if(part.getType() == null) {
+                state.setInput(index, input);
+            }
+        }
+        if(result.isSuccess()) {
+            advance(index);
+        }
+        return result;
+    }
+
+    /**
+     * Parses saved input of the part again.
+     *
+     * @return True if the input is still acceptable.
+     */
+    private boolean replay(SetupSchema.Part part, String input) {
+        ParseResult result = ParseResult.INVALID_FORMAT;
+        // Collections are saved as one input per line.
+        for(String line : input.split("\n")) {
+            result = part.parse(line, state.getValues());
+            if(result != ParseResult.INCOMPLETE) {
+                break;
+            }
+        }
+        if(!result.isSuccess()) {
+            return false;
+        }
+        state.setInput(part.getIndex(), input);
+        return true;
+    }
+
+    private void advance(int index) {
+        if(index == state.getStep()) {
+            state.setStep(index + 1);
+        }
+    }
+
+    /**
+     * Parks this session while value of current part is being
+     * built. Inputs sent while parked are deferred.
+     *
+     * @return Ticket to unpark the session with.
+     */
+    protected int park() {
+        return state.park();
+    }
+
+    /**
+     * Unparks this session, if it's still parked
+     * with provided ticket.
+     *
+     * @param ticket The ticket.
+     * @return True if the session was unparked by this call.
+     */
+    protected boolean unpark(int ticket) {
+        return state.unpark(ticket);
+    }
+
+    protected boolean isParked() {
+        return state.isParked();
+    }
+
+    protected boolean isClosed() {
+        return state.isClosed();
+    }
+
+    public InputLimit getInputLimit() {
+        return template.getInputLimit();
+    }
+
+    /**
+     * Returns number of inputs dropped by the input limit.
+     *
+     * @return The count.
+     */
+    public int getDroppedInputs() {
+        return state.getDroppedInputs();
+    }
+
+    /**
+     * Takes one input from the input limit.
+     *
+     * @return 0 if the input can be handled, otherwise
+     * nanos until the limit allows next one.
+     */
+    protected long acquireInput() {
+        return state.acquireInput(template.getInputLimit(), System.nanoTime());
+    }
+
+    /**
+     * Returns whether invalid format reply can be sent
+     * to the player now.
+     *
+     * @return False if the reply should be skipped.
+     */
+    protected boolean acquireReply() {
+        return state.acquireReply(template.getInputLimit(), System.nanoTime());
+    }
+
+    protected boolean coalesce(String input) {
+        return state.coalesce(input);
+    }
+
+    protected boolean hasCoalesced() {
+        return state.hasCoalesced();
+    }
+
+    @Nullable
+    protected String takeCoalesced() {
+        return state.takeCoalesced();
+    }
+
+    protected void drop() {
+        state.drop();
+    }
+
+    protected boolean defer(String input) {
+        return state.defer(input);
+    }
+
+    @Nullable
+    protected String pollDeferred() {
+        return state.pollDeferred();
+    }
+
+    protected SetupLib.InputHandler<T>[] getInputHandlers(SetupPart<T> part) {
+        return template.getInputHandlers(part);
+    }
+
+    protected SetupPart<T> getCurrent() {
+        return state.getCurrent();
+    }
+
+    protected ValueSlots getValues() {
+        return state.getValues();
+    }
+
+    @Nullable
+    protected UUID getPlayerId() {
+        return state.getPlayerId();
+    }
+
+    protected void setPlayerId(UUID playerId) {
+        state.setPlayerId(playerId);
+    }
+
+    protected SetupSchema<T> getSchema() {
+        return template.getSchema();
+    }
+
+    protected MessageTemplates getMessages() {
+        return template.getMessages();
+    }
+
+    protected long getBuildTimeout() {
+        return template.getBuildTimeout();
+    }
+
+    @Nullable
+    protected SetupLib.SessionStore getSessionStore() {
+        return template.getSessionStore();
+    }
+
+    @Nullable
+    protected SetupLib.SessionTransport getSessionTransport() {
+        return template.getSessionTransport();
+    }
+
+    @Nullable
+    protected SetupLib.AsyncCustomTypeBuilder<?> getCustomTypeBuilder(Class<?> type) {
+        return template.getCustomTypeBuilder(type);
+    }
+
+}
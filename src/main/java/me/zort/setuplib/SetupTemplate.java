@@ -0,0 +1,197 @@
+package me.zort.setuplib;
+
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.Primitives;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import me.zort.setuplib.exception.SetupException;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Frozen configuration of a setup.
+ * <p>
+ * Template is made by {@link SetupLib#freeze()} and never
+ * changes, so all sessions started from it share it without
+ * any copying. Changes of the {@link SetupLib} only apply to
+ * sessions started after them.
+ *
+ * @param <T> Type of target.
+ */
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+@Getter(AccessLevel.PROTECTED)
+public final class SetupTemplate<T> {
+
+    @Getter
+    private final Class<T> target;
+    @Getter
+    private final Plugin plugin;
+    private final SetupLib.SetupMessageDecorator<T>[] decorators;
+    private final InputHandlers<T> inputHandlers;
+    private final Map<Class<?>, SetupLib.AsyncCustomTypeBuilder<?>> customTypes;
+    private final CustomTypeIndex customTypeIndex;
+    private final SetupLib.FinishHandler<T> finishHandler;
+    private final SetupLib.ErrorHandler<T> errorHandler;
+    private final Executor completionExecutor;
+    private final MessageTemplates messages;
+    private final SetupLib.ResultBinder<T> resultBinder;
+    // Timeout of the whole setup in nanos, 0 means no limit.
+    private final long timeout;
+    // Time limit of async custom type builders in nanos.
+    private final long buildTimeout;
+    private final InputLimit inputLimit;
+    @Nullable
+    private final SetupLib.SessionStore sessionStore;
+    @Nullable
+    private final SetupLib.SessionTransport sessionTransport;
+    private final String sessionKey;
+    private final SetupLib.MessageSender messageSender;
+    @Getter
+    private final SetupSchema<T> schema;
+
+    public CompletableFuture<T> start(Player player) {
+        // Initial checks.
+        Preconditions.checkState(!schema.isEmpty(), "Cannot start empty setup!");
+        Preconditions.checkState(SetupLib.getListener().isAttached(plugin), "Plugin is not initialized!");
+
+        SetupSession<T> session = newSession();
+        try {
+            session.doNext(player);
+        } catch (SetupException e) {
+            // Idk what happened here XD
+            throw new RuntimeException(e);
+        }
+        SetupLib.getMetrics().sessionStarted(plugin, target);
+        SetupLib.getListener().register(player.getUniqueId(), session);
+        return session.getFuture();
+    }
+
+    /**
+     * Creates headless batch of this setup.
+     *
+     * @return The batch.
+     */
+    public SetupBatch<T> batch() {
+        return new SetupBatch<>(this);
+    }
+
+    protected SetupSession<T> newSession() {
+        return new SetupSession<>(this);
+    }
+
+    /**
+     * Resumes session of this setup from saved progress.
+     * Progress of changed setup is dropped and custom type
+     * values are built again, the session continues from
+     * first part whose input is no longer acceptable.
+     *
+     * @param player The player.
+     * @param snapshot Saved progress.
+     */
+    protected void resume(Player player, SessionSnapshot snapshot) {
+        if(snapshot.getFingerprint() != schema.getFingerprint() || snapshot.getStep() > schema.size()) {
+            // Setup has changed since, progress cannot be used.
+            if(sessionStore != null) {
+                sessionStore.remove(player.getUniqueId());
+            }
+            return;
+        }
+        CompletableFuture<?>[] built = new CompletableFuture[snapshot.getStep()];
+        for(int i = 0; i < built.length; i++) {
+            SetupSchema.Part part = schema.getPart(i);
+            if(part.getCustomType() != null) {
+                built[i] = getCustomTypeBuilder(part.getCustomType()).build(player, snapshot.getInputs()[i]);
+            }
+        }
+        CompletableFuture<Void> all = CompletableFuture.allOf(Arrays.stream(built)
+                .filter(Objects::nonNull)
+                .toArray(CompletableFuture[]::new));
+        if(buildTimeout > 0) {
+            all = all.completeOnTimeout(null, buildTimeout, TimeUnit.NANOSECONDS);
+        }
+        all.whenComplete((v, err) -> resume(player, snapshot, built));
+    }
+
+    private void resume(Player player, SessionSnapshot snapshot, CompletableFuture<?>[] built) {
+        SetupSession<T> session = newSession();
+        session.restore(snapshot, built);
+        // Inputs are not handled before the prompt is sent.
+        session.execute(() -> {
+            // Player may have started other setup while values were built.
+            if(!player.isOnline() || !SetupLib.getListener().registerIfIdle(player.getUniqueId(), session)) {
+                return;
+            }
+            SetupLib.getMetrics().sessionStarted(plugin, target);
+            // Same as after input, errors reach the error handler.
+            SetupLib.getListener().next(session, player);
+        });
+    }
+
+    /**
+     * Sends lines as they are, compiled lines and
+     * decorated lines are already colorized.
+     *
+     * @param player The player.
+     * @param lines The lines.
+     */
+    protected void send(Player player, String[] lines) {
+        messageSender.send(player, lines);
+    }
+
+    /**
+     * Returns prompt of the part. Decorators run over its
+     * lines before color codes are translated, and their
+     * output is colorized once. Without any decorator,
+     * compiled lines are returned as they are.
+     *
+     * @param part The part.
+     * @return Decorated lines.
+     */
+    protected String[] decorate(SetupPart<T> part) {
+        if(decorators.length == 1) {
+            // Only default decorator.
+            return messages.getPrompt(part.getSchemaPart());
+        }
+        String[] lines = messages.getRawPrompt(part.getSchemaPart());
+        lines = Arrays.copyOf(lines, lines.length);
+        for(SetupLib.SetupMessageDecorator<T> d : decorators) {
+            lines = d.modify(part, lines);
+        }
+        return MessageTemplates.colorize(lines);
+    }
+
+    /**
+     * Returns input handlers that run for the part.
+     *
+     * @param part The part.
+     * @return The handlers, in order they were added.
+     */
+    protected SetupLib.InputHandler<T>[] getInputHandlers(SetupPart<T> part) {
+        return inputHandlers.get(schema, part.getSchemaPart());
+    }
+
+    /**
+     * Finds builder of most specific custom type
+     * registered for provided type.
+     *
+     * @param type The type.
+     * @return The builder or null if there is none.
+     */
+    @Nullable
+    public SetupLib.AsyncCustomTypeBuilder<?> getCustomTypeBuilder(Class<?> type) {
+        Class<?> customType = customTypeIndex.resolve(Primitives.wrap(type));
+        return customType != null
+                ? customTypes.get(customType)
+                : null;
+    }
+
+}
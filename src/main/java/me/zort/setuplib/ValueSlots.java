@@ -0,0 +1,103 @@
+package me.zort.setuplib;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Storage of values collected during the setup.
+ * <p>
+ * Parts of primitive {@link RequiredType}s are stored
+ * in primitive slots, so parsing them does not box
+ * anything. Other parts are stored as objects.
+ */
+public final class ValueSlots {
+
+    private final RequiredType[] types;
+    private final Object[] objects;
+    private final long[] primitives;
+
+    /**
+     * Constructs new empty slots.
+     *
+     * @param types Type of each slot, null for object slots.
+     */
+    public ValueSlots(RequiredType[] types) {
+        this.types = types;
+        this.objects = new Object[types.length];
+        this.primitives = new long[types.length];
+    }
+
+    private ValueSlots(ValueSlots other) {
+        this.types = other.types;
+        this.objects = Arrays.copyOf(other.objects, other.objects.length);
+        this.primitives = Arrays.copyOf(other.primitives, other.primitives.length);
+    }
+
+    public ValueSlots copy() {
+        return new ValueSlots(this);
+    }
+
+    public int size() {
+        return types.length;
+    }
+
+    public boolean isPrimitive(int index) {
+        RequiredType type = types[index];
+        return type != null && type.isPrimitive();
+    }
+
+    /**
+     * Returns value of the slot. Primitive values
+     * are boxed.
+     *
+     * @param index Index of the slot.
+     * @return The value.
+     */
+    @Nullable
+    public Object get(int index) {
+        return isPrimitive(index)
+                ? types[index].box(primitives[index])
+                : objects[index];
+    }
+
+    /**
+     * Sets value of the slot. Primitive slots
+     * accept their wrapper type.
+     *
+     * @param index Index of the slot.
+     * @param value The value.
+     */
+    public void set(int index, @Nullable Object value) {
+        if(isPrimitive(index) && value != null) {
+            primitives[index] = types[index].unbox(value);
+        } else {
+            objects[index] = value;
+        }
+    }
+
+    public long getRaw(int index) {
+        return primitives[index];
+    }
+
+    public void setObject(int index, @Nullable Object value) {
+        objects[index] = value;
+    }
+
+    public void setLong(int index, long value) {
+        primitives[index] = value;
+    }
+
+    public void setDouble(int index, double value) {
+        primitives[index] = Double.doubleToRawLongBits(value);
+    }
+
+    public void setBoolean(int index, boolean value) {
+        primitives[index] = value ? 1L : 0L;
+    }
+
+    public void setChar(int index, char value) {
+        primitives[index] = value;
+    }
+
+}
@@ -0,0 +1,20 @@
+package me.zort.setuplib.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks field whose own {@link Setup} fields are
+ * part of the parent setup.
+ * <p>
+ * Parts of the nested object follow in place of the
+ * field and are named by their path, like
+ * {@code address.street}. Type of the field needs
+ * no args constructor.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Nested {
+}
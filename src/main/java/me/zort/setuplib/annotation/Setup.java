@@ -29,4 +29,72 @@ public @interface Setup {
      */
     String[] invalidFormat() default {};
 
+    /**
+     * Time in seconds the player has to answer
+     * this part, 0 means no limit.
+     *
+     * @return The timeout.
+     */
+    long timeout() default 0;
+
+    /**
+     * Minimal value of numeric part.
+     *
+     * @return The minimal value.
+     */
+    double min() default Double.NEGATIVE_INFINITY;
+
+    /**
+     * Maximal value of numeric part.
+     *
+     * @return The maximal value.
+     */
+    double max() default Double.POSITIVE_INFINITY;
+
+    /**
+     * Minimal length of the input.
+     *
+     * @return The minimal length.
+     */
+    int minLength() default 0;
+
+    /**
+     * Maximal length of the input.
+     *
+     * @return The maximal length.
+     */
+    int maxLength() default Integer.MAX_VALUE;
+
+    /**
+     * Regular expression the whole input has to match,
+     * empty for any input.
+     *
+     * @return The expression.
+     */
+    String regex() default "";
+
+    /**
+     * Values the input has to be one of, ignoring case.
+     * Empty for any value.
+     *
+     * @return Allowed values.
+     */
+    String[] allowed() default {};
+
+    /**
+     * Enum the input has to be name of, ignoring case.
+     * {@link Enum} itself means any input.
+     *
+     * @return The enum.
+     */
+    Class<? extends Enum> allowedEnum() default Enum.class;
+
+    /**
+     * Input that ends collection part, ignoring case.
+     * Every other input is added to the collection.
+     *
+     * @return The terminator.
+     */
+    String terminator() default "done";
+
 }
@@ -1,21 +1,24 @@
 package me.zort.setuplib.exception;
 
 import lombok.Getter;
-import me.zort.setuplib.SetupLib;
+import me.zort.setuplib.SetupSession;
+import org.jetbrains.annotations.Nullable;
 
 public class SetupException extends Exception {
 
+    // Null when thrown from conversation.
     @Getter
-    private final SetupLib<?> setup;
+    @Nullable
+    private final SetupSession<?> session;
 
-    public SetupException(SetupLib<?> setup, String message) {
+    public SetupException(@Nullable SetupSession<?> session, String message) {
         super(message);
-        this.setup = setup;
+        this.session = session;
     }
 
-    public SetupException(SetupLib<?> setup, Throwable cause, String message) {
+    public SetupException(@Nullable SetupSession<?> session, Throwable cause, String message) {
         super(message, cause);
-        this.setup = setup;
+        this.session = session;
     }
 
 }
@@ -0,0 +1,17 @@
+package me.zort.setuplib.exception;
+
+import me.zort.setuplib.SetupSession;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Thrown when player left persistent setup. Progress
+ * is kept and resumed in new session when the player
+ * joins again.
+ */
+public class SetupSuspendedException extends SetupException {
+
+    public SetupSuspendedException(@Nullable SetupSession<?> session) {
+        super(session, "Player left, progress was saved.");
+    }
+
+}
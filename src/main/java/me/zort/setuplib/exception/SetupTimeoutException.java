@@ -0,0 +1,16 @@
+package me.zort.setuplib.exception;
+
+import me.zort.setuplib.SetupSession;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Thrown when player did not finish the setup
+ * or its part in time.
+ */
+public class SetupTimeoutException extends SetupException {
+
+    public SetupTimeoutException(@Nullable SetupSession<?> session) {
+        super(session, "Setup timed out.");
+    }
+
+}
@@ -0,0 +1,38 @@
+package me.zort.setuplib.impl;
+
+import me.zort.setuplib.SetupLib;
+import net.md_5.bungee.api.chat.TextComponent;
+import org.bukkit.ChatColor;
+import org.bukkit.entity.Player;
+
+/**
+ * Default message sender. Lines of one message are sent
+ * as single chat component, so multi-line prompt costs one
+ * chat packet instead of one per line.
+ */
+public final class ChatMessageSender implements SetupLib.MessageSender {
+
+    public static final ChatMessageSender INSTANCE = new ChatMessageSender();
+
+    // Component keeps formatting over line breaks, separate
+    // messages don't, so each line starts with reset.
+    private static final String LINE_BREAK = "\n" + ChatColor.RESET;
+
+    private ChatMessageSender() {
+    }
+
+    @Override
+    public void send(Player player, String message) {
+        player.sendMessage(message);
+    }
+
+    @Override
+    public void send(Player player, String[] lines) {
+        if(lines.length == 1) {
+            player.sendMessage(lines[0]);
+        } else if(lines.length > 1) {
+            player.spigot().sendMessage(TextComponent.fromLegacyText(String.join(LINE_BREAK, lines)));
+        }
+    }
+
+}
@@ -0,0 +1,216 @@
+package me.zort.setuplib.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import me.zort.setuplib.SetupMetrics;
+import me.zort.setuplib.SetupSchema;
+import me.zort.setuplib.util.Histogram;
+import me.zort.setuplib.util.RateMeter;
+import org.bukkit.plugin.Plugin;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Built-in metrics collected with counters and
+ * histograms that don't lock on the hot path.
+ * <p>
+ * Metrics are kept per plugin and target class and
+ * can be read with {@link #snapshot()} at any time.
+ * Durations are in nanoseconds.
+ */
+public final class DefaultSetupMetrics implements SetupMetrics {
+
+    // Window of input rate in seconds.
+    private static final int RATE_WINDOW = 10;
+
+    private final Map<String, Map<Class<?>, TargetMetrics>> plugins;
+
+    public DefaultSetupMetrics() {
+        this.plugins = Maps.newConcurrentMap();
+    }
+
+    @Override
+    public void sessionStarted(Plugin plugin, Class<?> target) {
+        TargetMetrics metrics = metrics(plugin, target);
+        metrics.started.increment();
+        metrics.active.increment();
+    }
+
+    @Override
+    public void sessionClosed(Plugin plugin, Class<?> target, CloseReason reason, long nanos) {
+        TargetMetrics metrics = metrics(plugin, target);
+        metrics.active.decrement();
+        metrics.closed.get(reason).increment();
+        if(reason == CloseReason.FINISH) {
+            metrics.duration.record(nanos);
+        }
+    }
+
+    @Override
+    public void stepCompleted(Plugin plugin, Class<?> target, SetupSchema.Part part, long nanos) {
+        metrics(plugin, target).part(part).stepTime.record(nanos);
+    }
+
+    @Override
+    public void input(Plugin plugin, Class<?> target, SetupSchema.Part part, boolean accepted) {
+        PartMetrics metrics = metrics(plugin, target).part(part);
+        metrics.inputs.increment();
+        if(!accepted) {
+            metrics.rejected.increment();
+        }
+    }
+
+    @Override
+    public void inputHandled(Plugin plugin, Class<?> target, long handlerNanos, long totalNanos) {
+        TargetMetrics metrics = metrics(plugin, target);
+        metrics.rate.mark();
+        metrics.handlerLatency.record(handlerNanos);
+        metrics.inputLatency.record(totalNanos);
+    }
+
+    @Override
+    public void error(Plugin plugin, Class<?> target, Throwable err) {
+        metrics(plugin, target).errors.increment();
+    }
+
+    /**
+     * Takes snapshot of all metrics.
+     *
+     * @return Snapshot of every plugin and target that
+     * had at least one session.
+     */
+    public List<TargetSnapshot> snapshot() {
+        ImmutableList.Builder<TargetSnapshot> result = ImmutableList.builder();
+        for(Map.Entry<String, Map<Class<?>, TargetMetrics>> plugin : plugins.entrySet()) {
+            for(Map.Entry<Class<?>, TargetMetrics> target : plugin.getValue().entrySet()) {
+                result.add(target.getValue().snapshot(plugin.getKey(), target.getKey()));
+            }
+        }
+        return result.build();
+    }
+
+    private TargetMetrics metrics(Plugin plugin, Class<?> target) {
+        Map<Class<?>, TargetMetrics> targets = plugins.get(plugin.getName());
+        if(targets == null) {
+            targets = plugins.computeIfAbsent(plugin.getName(), k -> Maps.newConcurrentMap());
+        }
+        TargetMetrics metrics = targets.get(target);
+        if(metrics == null) {
+            metrics = targets.computeIfAbsent(target, k -> new TargetMetrics());
+        }
+        return metrics;
+    }
+
+    private static final class TargetMetrics {
+
+        private final LongAdder active = new LongAdder();
+        private final LongAdder started = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final Map<CloseReason, LongAdder> closed = new EnumMap<>(CloseReason.class);
+        private final RateMeter rate = new RateMeter(RATE_WINDOW);
+        private final Histogram duration = new Histogram();
+        private final Histogram handlerLatency = new Histogram();
+        private final Histogram inputLatency = new Histogram();
+        private final Map<String, PartMetrics> parts = Maps.newConcurrentMap();
+
+        private TargetMetrics() {
+            for(CloseReason reason : CloseReason.values()) {
+                closed.put(reason, new LongAdder());
+            }
+        }
+
+        private PartMetrics part(SetupSchema.Part part) {
+            PartMetrics metrics = parts.get(part.getName());
+            if(metrics == null) {
+                metrics = parts.computeIfAbsent(part.getName(), k -> new PartMetrics());
+            }
+            return metrics;
+        }
+
+        private TargetSnapshot snapshot(String plugin, Class<?> target) {
+            ImmutableMap.Builder<CloseReason, Long> closed = ImmutableMap.builder();
+            this.closed.forEach((reason, count) -> closed.put(reason, count.sum()));
+            ImmutableMap.Builder<String, PartSnapshot> parts = ImmutableMap.builder();
+            this.parts.forEach((name, part) -> parts.put(name, part.snapshot()));
+            return new TargetSnapshot(plugin,
+                    target,
+                    active.sum(),
+                    started.sum(),
+                    errors.sum(),
+                    closed.build(),
+                    rate.getRate(),
+                    duration.snapshot(),
+                    handlerLatency.snapshot(),
+                    inputLatency.snapshot(),
+                    parts.build());
+        }
+
+    }
+
+    private static final class PartMetrics {
+
+        private final LongAdder inputs = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final Histogram stepTime = new Histogram();
+
+        private PartSnapshot snapshot() {
+            return new PartSnapshot(inputs.sum(), rejected.sum(), stepTime.snapshot());
+        }
+
+    }
+
+    /**
+     * Metrics of one setup target.
+     */
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    @Getter
+    public static final class TargetSnapshot {
+
+        private final String plugin;
+        private final Class<?> target;
+        private final long activeSessions;
+        private final long startedSessions;
+        private final long errors;
+        // Closed sessions by reason, abandoned ones are closed by quit or timeout.
+        private final Map<CloseReason, Long> closedSessions;
+        private final double inputsPerSecond;
+        // End to end duration of finished setups.
+        private final Histogram.Snapshot duration;
+        // Time spent in input handlers per input.
+        private final Histogram.Snapshot handlerLatency;
+        // Time spent processing input, including input handlers.
+        private final Histogram.Snapshot inputLatency;
+        private final Map<String, PartSnapshot> parts;
+
+        public long getAbandonedSessions() {
+            return closedSessions.get(CloseReason.QUIT) + closedSessions.get(CloseReason.TIMEOUT);
+        }
+
+    }
+
+    /**
+     * Metrics of one setup part.
+     */
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    @Getter
+    public static final class PartSnapshot {
+
+        private final long inputs;
+        private final long invalidInputs;
+        // Time from sending the part to accepted answer.
+        private final Histogram.Snapshot stepTime;
+
+        public double getInvalidRate() {
+            return inputs > 0 ? (double) invalidInputs / inputs : 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,306 @@
+package me.zort.setuplib.impl;
+
+import me.zort.setuplib.SessionSnapshot;
+import me.zort.setuplib.SetupLib;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+/**
+ * Session store keeping sessions in append-only binary log.
+ * <p>
+ * Saves and removals are only queued on the calling thread.
+ * One background thread writes them in batches, where only
+ * the last change of each player is written. The log is read
+ * on first load and compacted once it holds too many
+ * outdated records. Changes of a batch that failed to be
+ * written stay queued until next batch.
+ * <p>
+ * Each record is prefixed with its length and checksum, so
+ * record torn by crash is detected and dropped.
+ */
+public final class FileSessionStore implements SetupLib.SessionStore, Closeable {
+
+    private static final int MAGIC = 0x534c5332;
+    private static final byte OP_SAVE = 1;
+    private static final byte OP_REMOVE = 2;
+    // Records that are not worth compacting.
+    private static final int COMPACT_MIN_RECORDS = 1024;
+    // Marks removal in pending changes.
+    private static final SessionSnapshot REMOVED = new SessionSnapshot("", 0, 0, new long[0], new String[0]);
+
+    private final File file;
+    private final ExecutorService io;
+    private final Map<UUID, SessionSnapshot> pending;
+    private final AtomicBoolean scheduled;
+
+    // Accessed only by the io thread.
+    private Map<UUID, SessionSnapshot> sessions;
+    private DataOutputStream out;
+    private int records;
+
+    public FileSessionStore(File file) {
+        this.file = file;
+        this.io = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "SetupLib-SessionStore");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pending = new ConcurrentHashMap<>();
+        this.scheduled = new AtomicBoolean(false);
+    }
+
+    @Override
+    public void save(UUID playerId, SessionSnapshot snapshot) {
+        pending.put(playerId, snapshot);
+        schedule();
+    }
+
+    @Override
+    public void remove(UUID playerId) {
+        pending.put(playerId, REMOVED);
+        schedule();
+    }
+
+    @Override
+    public CompletableFuture<SessionSnapshot> load(UUID playerId) {
+        SessionSnapshot snapshot = pending.get(playerId);
+        if(snapshot != null) {
+            // Not written yet, but it's the newest one.
+            return CompletableFuture.completedFuture(snapshot != REMOVED ? snapshot : null);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return open().get(playerId);
+            } catch(IOException e) {
+                throw new CompletionException(e);
+            }
+        }, io);
+    }
+
+    /**
+     * Writes all queued changes, compacts the log and
+     * stops the writer thread. Store cannot be used after
+     * this, so this should be called on plugin disable.
+     */
+    @Override
+    public void close() throws IOException {
+        Future<?> task = io.submit(() -> {
+            writePending();
+            if(out != null) {
+                compact();
+                out.close();
+                out = null;
+            }
+            return null;
+        });
+        io.shutdown();
+        try {
+            task.get();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch(ExecutionException e) {
+            throw e.getCause() instanceof IOException
+                    ? (IOException) e.getCause()
+                    : new IOException(e.getCause());
+        }
+    }
+
+    private void schedule() {
+        if(scheduled.compareAndSet(false, true)) {
+            try {
+                io.execute(this::flush);
+            } catch(RejectedExecutionException e) {
+                // Store is closed.
+                scheduled.set(false);
+            }
+        }
+    }
+
+    private void flush() {
+        scheduled.set(false);
+        try {
+            writePending();
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void writePending() throws IOException {
+        if(pending.isEmpty()) {
+            return;
+        }
+        Map<UUID, SessionSnapshot> sessions = open();
+        List<Map.Entry<UUID, SessionSnapshot>> written = new ArrayList<>(pending.size());
+        try {
+            for(Map.Entry<UUID, SessionSnapshot> entry : pending.entrySet()) {
+                UUID playerId = entry.getKey();
+                SessionSnapshot snapshot = entry.getValue();
+                if(snapshot != REMOVED || sessions.containsKey(playerId)) {
+                    writeRecord(out, playerId, snapshot != REMOVED ? snapshot : null);
+                    records++;
+                }
+                written.add(entry);
+            }
+            out.flush();
+        } catch(IOException e) {
+            // Changes stay pending and are written again with the next batch.
+            reopen();
+            throw e;
+        }
+        for(Map.Entry<UUID, SessionSnapshot> entry : written) {
+            UUID playerId = entry.getKey();
+            SessionSnapshot snapshot = entry.getValue();
+            if(snapshot == REMOVED) {
+                sessions.remove(playerId);
+            } else {
+                sessions.put(playerId, snapshot);
+            }
+            // Only removed if not replaced in the meantime.
+            pending.remove(playerId, snapshot);
+        }
+        if(records > COMPACT_MIN_RECORDS && records > sessions.size() * 2) {
+            try {
+                compact();
+            } catch(IOException e) {
+                reopen();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Drops the log state after failed write. The log is read
+     * again before next write, which cuts off torn record and
+     * opens new stream.
+     */
+    private void reopen() {
+        if(out != null) {
+            try {
+                out.close();
+            } catch(IOException ignored) {
+                // Stream is already broken.
+            }
+        }
+        out = null;
+        sessions = null;
+    }
+
+    private Map<UUID, SessionSnapshot> open() throws IOException {
+        if(sessions != null) {
+            return sessions;
+        }
+        Map<UUID, SessionSnapshot> sessions = new HashMap<>();
+        int records = 0;
+        long valid = 0;
+        if(file.exists()) {
+            try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if(in.readInt() != MAGIC) {
+                    throw new IOException("File " + file + " is not a session log!");
+                }
+                valid = 4;
+                byte[] buffer = new byte[256];
+                CRC32 crc = new CRC32();
+                while(true) {
+                    int length;
+                    long checksum;
+                    try {
+                        length = in.readInt();
+                        checksum = in.readInt() & 0xFFFFFFFFL;
+                        if(length < 0 || length > file.length() - valid - 8) {
+                            // Length of torn record.
+                            break;
+                        }
+                        if(buffer.length < length) {
+                            buffer = new byte[length];
+                        }
+                        in.readFully(buffer, 0, length);
+                    } catch(EOFException e) {
+                        break;
+                    }
+                    crc.reset();
+                    crc.update(buffer, 0, length);
+                    if(crc.getValue() != checksum) {
+                        // Torn write, rest of the log is lost.
+                        break;
+                    }
+                    readRecord(new DataInputStream(new ByteArrayInputStream(buffer, 0, length)), sessions);
+                    valid += 8 + length;
+                    records++;
+                }
+            } catch(EOFException e) {
+                // Empty or truncated header.
+                valid = 0;
+            }
+        }
+        if(valid == 0) {
+            Files.deleteIfExists(file.toPath());
+        } else if(valid < file.length()) {
+            try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(valid);
+            }
+        }
+        this.out = openLog(file, valid == 0);
+        this.sessions = sessions;
+        this.records = records;
+        return sessions;
+    }
+
+    private void compact() throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try(DataOutputStream compacted = openLog(temp, true)) {
+            for(Map.Entry<UUID, SessionSnapshot> entry : sessions.entrySet()) {
+                writeRecord(compacted, entry.getKey(), entry.getValue());
+            }
+        }
+        out.close();
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        out = openLog(file, false);
+        records = sessions.size();
+    }
+
+    private static DataOutputStream openLog(File file, boolean create) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if(parent != null) {
+            parent.mkdirs();
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, !create)));
+        if(create) {
+            out.writeInt(MAGIC);
+        }
+        return out;
+    }
+
+    private static void writeRecord(DataOutputStream out, UUID playerId, @Nullable SessionSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream record = new DataOutputStream(bytes);
+        record.writeByte(snapshot != null ? OP_SAVE : OP_REMOVE);
+        record.writeLong(playerId.getMostSignificantBits());
+        record.writeLong(playerId.getLeastSignificantBits());
+        if(snapshot != null) {
+            snapshot.writeTo(record);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray(), 0, bytes.size());
+        out.writeInt(bytes.size());
+        out.writeInt((int) crc.getValue());
+        bytes.writeTo(out);
+    }
+
+    private static void readRecord(DataInputStream in, Map<UUID, SessionSnapshot> sessions) throws IOException {
+        byte op = in.readByte();
+        UUID playerId = new UUID(in.readLong(), in.readLong());
+        if(op == OP_REMOVE) {
+            sessions.remove(playerId);
+            return;
+        }
+        sessions.put(playerId, SessionSnapshot.readFrom(in));
+    }
+
+}
@@ -0,0 +1,97 @@
+package me.zort.setuplib.impl;
+
+import com.google.common.base.Preconditions;
+import me.zort.setuplib.SetupLib;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Session transport delivering sessions within this process.
+ * <p>
+ * Sent session waits in a mailbox of the player until it's
+ * received, or until the handoff window passes. Receiving
+ * waits for session sent up to the window as well, since
+ * the player may join before the session is sent.
+ * <p>
+ * This is useful for tests and for setups shared by
+ * several plugins on one server. It's also the inbox of
+ * {@link SocketSessionTransport}.
+ */
+public final class LoopbackSessionTransport implements SetupLib.SessionTransport {
+
+    private final long window;
+    private final Map<UUID, Mailbox> mailboxes;
+
+    public LoopbackSessionTransport() {
+        this(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Constructs new transport.
+     *
+     * @param window How long sent session waits for the player, and
+     *               the player waits for the session.
+     * @param unit Unit of the window.
+     */
+    public LoopbackSessionTransport(long window, TimeUnit unit) {
+        Preconditions.checkArgument(window > 0, "Window must be positive!");
+        this.window = unit.toNanos(window);
+        this.mailboxes = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void send(UUID playerId, byte[] session) {
+        long now = System.nanoTime();
+        // Sessions nobody received.
+        mailboxes.values().removeIf(mailbox -> mailbox.isExpired(now, window));
+        Mailbox sent = new Mailbox(CompletableFuture.completedFuture(session), now);
+        while(true) {
+            Mailbox mailbox = mailboxes.get(playerId);
+            if(mailbox == null) {
+                if(mailboxes.putIfAbsent(playerId, sent) == null) {
+                    return;
+                }
+            } else if(mailbox.session.complete(session)) {
+                // Player is already waiting.
+                return;
+            } else if(mailboxes.replace(playerId, mailbox, sent)) {
+                // Newer session replaces the one not received yet.
+                return;
+            }
+        }
+    }
+
+    @Override
+    public CompletableFuture<byte[]> receive(UUID playerId) {
+        long now = System.nanoTime();
+        // Session sent longer than the window ago is dropped.
+        Mailbox mailbox = mailboxes.compute(playerId, (id, current) -> current != null && !current.isExpired(now, window)
+                ? current
+                : new Mailbox(new CompletableFuture<>(), now));
+        return mailbox.session
+                .completeOnTimeout(null, window, TimeUnit.NANOSECONDS)
+                .whenComplete((session, ex) -> mailboxes.remove(playerId, mailbox));
+    }
+
+    private static final class Mailbox {
+
+        private final CompletableFuture<byte[]> session;
+        private final long createdNanos;
+
+        private Mailbox(CompletableFuture<byte[]> session, long createdNanos) {
+            this.session = session;
+            this.createdNanos = createdNanos;
+        }
+
+        private boolean isExpired(long now, long window) {
+            // Waiting receivers are removed by their timeout.
+            return session.isDone() && now - createdNanos > window;
+        }
+
+    }
+
+}
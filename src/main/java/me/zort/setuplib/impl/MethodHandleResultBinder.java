@@ -0,0 +1,293 @@
+package me.zort.setuplib.impl;
+
+import com.google.common.base.Defaults;
+import me.zort.setuplib.SetupLib;
+import me.zort.setuplib.SetupSchema;
+import me.zort.setuplib.ValueSlots;
+
+import java.lang.invoke.*;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Default result binder compiled once per schema.
+ * <p>
+ * Targets with no args constructor are instantiated
+ * and filled field by field using method handles.
+ * Records and classes without no args constructor are
+ * created using their canonical constructor. Nested setups
+ * are created the same way as targets with no args constructor
+ * and assigned to their field before the parts are filled.
+ *
+ * @param <T> Type of target.
+ */
+public final class MethodHandleResultBinder<T> implements SetupLib.ResultBinder<T> {
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType RAW_SETTER_TYPE = MethodType.methodType(void.class, Object.class, long.class);
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    private final Class<T> target;
+    // No args mode.
+    private final Supplier<Object> factory;
+    private final MethodHandle[] setters;
+    private final boolean[] rawSetters;
+    // Owner of each part, -1 for the target.
+    private final int[] owners;
+    private final Supplier<Object>[] groupFactories;
+    private final MethodHandle[] groupSetters;
+    private final int[] groupOwners;
+    // Constructor mode.
+    private final MethodHandle constructor;
+    private final int[] parameterParts;
+    private final Object[] parameterDefaults;
+
+    private MethodHandleResultBinder(Class<T> target,
+                                     Supplier<Object> factory,
+                                     MethodHandle[] setters,
+                                     boolean[] rawSetters,
+                                     int[] owners,
+                                     Supplier<Object>[] groupFactories,
+                                     MethodHandle[] groupSetters,
+                                     int[] groupOwners,
+                                     MethodHandle constructor,
+                                     int[] parameterParts,
+                                     Object[] parameterDefaults) {
+        this.target = target;
+        this.factory = factory;
+        this.setters = setters;
+        this.rawSetters = rawSetters;
+        this.owners = owners;
+        this.groupFactories = groupFactories;
+        this.groupSetters = groupSetters;
+        this.groupOwners = groupOwners;
+        this.constructor = constructor;
+        this.parameterParts = parameterParts;
+        this.parameterDefaults = parameterDefaults;
+    }
+
+    /**
+     * Compiles new binder for provided schema.
+     *
+     * @param schema The schema.
+     * @return Compiled binder.
+     * @throws ReflectiveOperationException If target cannot be bound.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> MethodHandleResultBinder<T> compile(SetupSchema<T> schema) throws ReflectiveOperationException {
+        Class<T> target = schema.getTarget();
+        MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(target, MethodHandles.lookup());
+
+        if(!target.isRecord()) {
+            Constructor<T> noArgs = null;
+            try {
+                noArgs = target.getDeclaredConstructor();
+            } catch(NoSuchMethodException ignored) {}
+            if(noArgs != null) {
+                MethodHandle[] setters = new MethodHandle[schema.size()];
+                boolean[] rawSetters = new boolean[schema.size()];
+                int[] owners = new int[schema.size()];
+                for(int i = 0; i < setters.length; i++) {
+                    SetupSchema.Part part = schema.getPart(i);
+                    Field field = field(part);
+                    MethodHandle setter = setter(field);
+                    Class<?> fieldType = field.getType();
+                    if(fieldType.isPrimitive() && part.getType() != null) {
+                        // Primitive fields are filled directly from raw slots.
+                        setters[i] = rawSetter(setter, fieldType);
+                        rawSetters[i] = true;
+                    } else {
+                        setters[i] = setter.asType(SETTER_TYPE);
+                    }
+                    owners[i] = part.getOwner();
+                }
+                Supplier<Object>[] groupFactories = new Supplier[schema.getGroupCount()];
+                MethodHandle[] groupSetters = new MethodHandle[groupFactories.length];
+                int[] groupOwners = new int[groupFactories.length];
+                for(int i = 0; i < groupFactories.length; i++) {
+                    SetupSchema.Group group = schema.getGroup(i);
+                    Class<?> type = group.getField().getType();
+                    Constructor<?> groupNoArgs;
+                    try {
+                        groupNoArgs = type.getDeclaredConstructor();
+                    } catch(NoSuchMethodException e) {
+                        throw new NoSuchMethodException(String.format("Nested setup %s has no no args constructor!", type.getName()));
+                    }
+                    groupFactories[i] = factory(MethodHandles.privateLookupIn(type, MethodHandles.lookup()), groupNoArgs);
+                    groupSetters[i] = setter(group.getField()).asType(SETTER_TYPE);
+                    groupOwners[i] = group.getOwner();
+                }
+                return new MethodHandleResultBinder<>(target, factory(lookup, noArgs), setters, rawSetters, owners,
+                        groupFactories, groupSetters, groupOwners, null, null, null);
+            }
+        }
+
+        if(schema.getGroupCount() > 0) {
+            throw new NoSuchMethodException(String.format("Target %s with nested setups needs no args constructor!", target.getName()));
+        }
+
+        // Record-like target, we need to find canonical constructor.
+        Constructor<?> constructor = null;
+        String[] names;
+        if(target.isRecord()) {
+            RecordComponent[] components = target.getRecordComponents();
+            names = new String[components.length];
+            Class<?>[] types = new Class<?>[components.length];
+            for(int i = 0; i < components.length; i++) {
+                names[i] = components[i].getName();
+                types[i] = components[i].getType();
+            }
+            constructor = target.getDeclaredConstructor(types);
+        } else {
+            names = new String[schema.size()];
+            Class<?>[] types = new Class<?>[schema.size()];
+            for(int i = 0; i < names.length; i++) {
+                names[i] = schema.getPart(i).getName();
+                types[i] = field(schema.getPart(i)).getType();
+            }
+            try {
+                constructor = target.getDeclaredConstructor(types);
+            } catch(NoSuchMethodException e) {
+                throw new NoSuchMethodException(String.format("Target %s has neither no args constructor nor constructor matching setup parts!", target.getName()));
+            }
+        }
+
+        int[] parameterParts = new int[names.length];
+        Object[] parameterDefaults = new Object[names.length];
+        Class<?>[] parameterTypes = constructor.getParameterTypes();
+        for(int i = 0; i < names.length; i++) {
+            parameterParts[i] = -1;
+            for(int j = 0; j < schema.size(); j++) {
+                if(schema.getPart(j).getName().equals(names[i])) {
+                    parameterParts[i] = j;
+                    break;
+                }
+            }
+            if(parameterParts[i] == -1 && parameterTypes[i].isPrimitive()) {
+                // Components not part of the setup get default value.
+                parameterDefaults[i] = Defaults.defaultValue(parameterTypes[i]);
+            }
+        }
+        MethodHandle handle = lookup.unreflectConstructor(constructor)
+                .asSpreader(Object[].class, names.length)
+                .asType(CONSTRUCTOR_TYPE);
+        return new MethodHandleResultBinder<>(target, null, null, null, null, null, null, null, handle, parameterParts, parameterDefaults);
+    }
+
+    private static Field field(SetupSchema.Part part) throws NoSuchFieldException {
+        Field field = part.getField();
+        if(field == null) {
+            throw new NoSuchFieldException(String.format("Part %s has no field to bind!", part.getName()));
+        }
+        return field;
+    }
+
+    private static MethodHandle setter(Field field) throws IllegalAccessException {
+        if(Modifier.isFinal(field.getModifiers())) {
+            // Final field can only be set through accessible field.
+            try {
+                field.setAccessible(true);
+            } catch(RuntimeException e) {
+                throw reject(field, e);
+            }
+        }
+        try {
+            return MethodHandles.privateLookupIn(field.getDeclaringClass(), MethodHandles.lookup()).unreflectSetter(field);
+        } catch(IllegalAccessException e) {
+            if(Modifier.isFinal(field.getModifiers())) {
+                throw reject(field, e);
+            }
+            throw e;
+        }
+    }
+
+    private static IllegalAccessException reject(Field field, Exception cause) {
+        IllegalAccessException e = new IllegalAccessException(String.format("Final field %s of %s cannot be set!",
+                field.getName(), field.getDeclaringClass().getName()));
+        e.initCause(cause);
+        return e;
+    }
+
+    private static MethodHandle rawSetter(MethodHandle setter, Class<?> fieldType) throws ReflectiveOperationException {
+        setter = setter.asType(setter.type().changeParameterType(0, Object.class));
+        if(fieldType == double.class || fieldType == float.class) {
+            // Floating values are stored as raw bits.
+            MethodHandle fromBits = MethodHandles.lookup().findStatic(Double.class, "longBitsToDouble",
+                    MethodType.methodType(double.class, long.class));
+            setter = MethodHandles.explicitCastArguments(setter, MethodType.methodType(void.class, Object.class, double.class));
+            return MethodHandles.filterArguments(setter, 1, fromBits);
+        }
+        return MethodHandles.explicitCastArguments(setter, RAW_SETTER_TYPE);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Supplier<Object> factory(MethodHandles.Lookup lookup, Constructor<?> constructor) throws IllegalAccessException {
+        MethodHandle handle = lookup.unreflectConstructor(constructor);
+        try {
+            CallSite site = LambdaMetafactory.metafactory(lookup,
+                    "get",
+                    MethodType.methodType(Supplier.class),
+                    MethodType.methodType(Object.class),
+                    handle,
+                    MethodType.methodType(constructor.getDeclaringClass()));
+            return (Supplier<Object>) site.getTarget().invokeExact();
+        } catch(Throwable e) {
+            // Lambda cannot be spun for this target, use the handle directly.
+            MethodHandle generic = handle.asType(MethodType.methodType(Object.class));
+            return () -> {
+                try {
+                    return generic.invokeExact();
+                } catch(RuntimeException | Error ex) {
+                    throw ex;
+                } catch(Throwable ex) {
+                    throw new RuntimeException(ex);
+                }
+            };
+        }
+    }
+
+    @Override
+    public T bind(ValueSlots values) throws Exception {
+        try {
+            if(constructor == null) {
+                Object instance = factory.get();
+                Object[] groups = groupFactories.length > 0
+                        ? new Object[groupFactories.length]
+                        : null;
+                for(int i = 0; i < groupFactories.length; i++) {
+                    // Owners come first, so they are already created.
+                    groups[i] = groupFactories[i].get();
+                    groupSetters[i].invokeExact(groupOwners[i] == -1 ? instance : groups[groupOwners[i]], groups[i]);
+                }
+                for(int i = 0; i < setters.length; i++) {
+                    Object owner = owners[i] == -1 ? instance : groups[owners[i]];
+                    if(rawSetters[i]) {
+                        setters[i].invokeExact(owner, values.getRaw(i));
+                    } else {
+                        setters[i].invokeExact(owner, values.get(i));
+                    }
+                }
+                return target.cast(instance);
+            }
+
+            Object[] args = Arrays.copyOf(parameterDefaults, parameterDefaults.length);
+            for(int i = 0; i < args.length; i++) {
+                int part = parameterParts[i];
+                if(part != -1) {
+                    args[i] = values.get(part);
+                }
+            }
+            return target.cast((Object) constructor.invokeExact(args));
+        } catch(RuntimeException | Error e) {
+            throw e;
+        } catch(Throwable e) {
+            throw new InvocationTargetException(e);
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+package me.zort.setuplib.impl;
+
+import com.google.common.collect.ImmutableList;
+import me.zort.setuplib.SetupLib;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Session transport sending sessions over TCP sockets.
+ * <p>
+ * Each server listens on its own address and sends session
+ * of leaving player to all its peers, since it does not know
+ * where the player goes. Session that is not received within
+ * the handoff window is dropped by the peer.
+ * <p>
+ * Connections are not authenticated, so the address should
+ * be reachable only by the servers, like a loopback address
+ * when testing several servers on one machine.
+ */
+public final class SocketSessionTransport implements SetupLib.SessionTransport, Closeable {
+
+    private static final int MAGIC = 0x534c5431;
+    // Much more than any session takes.
+    private static final int MAX_SESSION_BYTES = 1 << 20;
+    private static final int TIMEOUT_MILLIS = 2000;
+
+    private final ServerSocket serverSocket;
+    private final List<InetSocketAddress> peers;
+    private final LoopbackSessionTransport inbox;
+
+    public SocketSessionTransport(InetSocketAddress address, List<InetSocketAddress> peers) throws IOException {
+        this(address, peers, 5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Constructs new transport and starts listening.
+     *
+     * @param address Address this server listens on.
+     * @param peers Addresses of other servers.
+     * @param window How long received session waits for the player.
+     * @param unit Unit of the window.
+     * @throws IOException If the address cannot be bound.
+     */
+    public SocketSessionTransport(InetSocketAddress address, List<InetSocketAddress> peers, long window, TimeUnit unit) throws IOException {
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(address);
+        this.peers = ImmutableList.copyOf(peers);
+        this.inbox = new LoopbackSessionTransport(window, unit);
+        Thread thread = new Thread(this::accept, "SetupLib-SessionTransport");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void send(UUID playerId, byte[] session) throws IOException {
+        IOException error = null;
+        int sent = 0;
+        for(InetSocketAddress peer : peers) {
+            try(Socket socket = new Socket()) {
+                socket.connect(peer, TIMEOUT_MILLIS);
+                socket.setSoTimeout(TIMEOUT_MILLIS);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                out.writeInt(MAGIC);
+                out.writeLong(playerId.getMostSignificantBits());
+                out.writeLong(playerId.getLeastSignificantBits());
+                out.writeInt(session.length);
+                out.write(session);
+                out.flush();
+                sent++;
+            } catch(IOException e) {
+                // Peer may be down, others still get the session.
+                if(error == null) {
+                    error = e;
+                } else {
+                    error.addSuppressed(e);
+                }
+            }
+        }
+        if(sent == 0 && error != null) {
+            throw error;
+        }
+    }
+
+    @Override
+    public CompletableFuture<byte[]> receive(UUID playerId) {
+        return inbox.receive(playerId);
+    }
+
+    public InetSocketAddress getAddress() {
+        return (InetSocketAddress) serverSocket.getLocalSocketAddress();
+    }
+
+    /**
+     * Stops listening. Sessions already received can
+     * still be received.
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    private void accept() {
+        while(!serverSocket.isClosed()) {
+            try(Socket socket = serverSocket.accept()) {
+                socket.setSoTimeout(TIMEOUT_MILLIS);
+                read(new DataInputStream(new BufferedInputStream(socket.getInputStream())));
+            } catch(IOException e) {
+                if(!serverSocket.isClosed()) {
+                    // Only this connection failed.
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void read(DataInputStream in) throws IOException {
+        if(in.readInt() != MAGIC) {
+            throw new IOException("Connection is not a session handoff!");
+        }
+        UUID playerId = new UUID(in.readLong(), in.readLong());
+        int length = in.readInt();
+        if(length < 0 || length > MAX_SESSION_BYTES) {
+            throw new IOException("Invalid session length " + length + "!");
+        }
+        byte[] session = new byte[length];
+        in.readFully(session);
+        inbox.send(playerId, session);
+    }
+
+}
@@ -0,0 +1,196 @@
+package me.zort.setuplib.impl;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import me.zort.setuplib.SetupDefinition;
+import me.zort.setuplib.SetupLib;
+import me.zort.setuplib.SetupLoader;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+
+/**
+ * Loads setups from definition files in a directory,
+ * one setup per file named by its id.
+ * <p>
+ * Files are read as YAML, JSON is accepted as well since
+ * it's a subset of YAML. See {@link SetupDefinition#parse}
+ * for the format.
+ * <p>
+ * Reload only reads files that were modified and compiles
+ * only definitions that really changed. Loaded setups are
+ * swapped at once, so {@link #load()} never returns half
+ * reloaded setups. Running sessions are not affected, they
+ * finish with the version they were started with.
+ */
+public final class YamlSetupLoader implements SetupLoader<Map<String, Object>> {
+
+    private static final Set<String> EXTENSIONS = ImmutableSet.of("yml", "yaml", "json");
+
+    private final Plugin plugin;
+    private final File directory;
+    private final BiConsumer<String, SetupLib<Map<String, Object>>> configurer;
+    // Accessed only while reloading.
+    private Map<String, Source> sources;
+    private volatile Map<String, SetupLib<Map<String, Object>>> setups;
+
+    public YamlSetupLoader(Plugin plugin, File directory) {
+        this(plugin, directory, (id, setup) -> {});
+    }
+
+    /**
+     * Constructs new loader.
+     *
+     * @param plugin The plugin setups are created by.
+     * @param directory Directory of definition files.
+     * @param configurer Configures every newly compiled setup, like
+     *                   registers its custom types and handlers.
+     */
+    public YamlSetupLoader(Plugin plugin, File directory, BiConsumer<String, SetupLib<Map<String, Object>>> configurer) {
+        this.plugin = plugin;
+        this.directory = directory;
+        this.configurer = configurer;
+        this.sources = ImmutableMap.of();
+        this.setups = null;
+    }
+
+    @Override
+    public Map<String, SetupLib<Map<String, Object>>> load() {
+        Map<String, SetupLib<Map<String, Object>>> setups = this.setups;
+        if(setups == null) {
+            reload();
+            setups = this.setups;
+        }
+        return setups;
+    }
+
+    @Nullable
+    public SetupLib<Map<String, Object>> get(String id) {
+        return load().get(id);
+    }
+
+    /**
+     * Reads changed definition files again. Definition that
+     * cannot be loaded is reported and its previous version
+     * stays loaded.
+     *
+     * @return Ids of setups that were added, changed or removed.
+     */
+    public synchronized Set<String> reload() {
+        File[] files = directory.listFiles(file -> file.isFile() && EXTENSIONS.contains(extension(file.getName())));
+        if(files == null) {
+            files = new File[0];
+        }
+        // Same order on every system.
+        Arrays.sort(files);
+
+        Map<String, Source> next = new LinkedHashMap<>();
+        Set<String> changed = new LinkedHashSet<>();
+        for(File file : files) {
+            String name = file.getName();
+            String id = name.substring(0, name.length() - extension(name).length() - 1);
+            if(next.containsKey(id)) {
+                plugin.getLogger().warning(String.format("Setup %s is defined more than once, %s is ignored.", id, name));
+                continue;
+            }
+            Source previous = sources.get(id);
+            long modified = file.lastModified();
+            long length = file.length();
+            if(previous != null && previous.file.equals(file) && previous.modified == modified && previous.length == length) {
+                next.put(id, previous);
+                continue;
+            }
+
+            SetupDefinition definition;
+            SetupLib<Map<String, Object>> setup;
+            try {
+                YamlConfiguration config = new YamlConfiguration();
+                config.load(file);
+                definition = SetupDefinition.parse(id, config, plugin.getClass().getClassLoader());
+                if(previous != null && definition.equals(previous.definition)) {
+                    // File was only touched.
+                    next.put(id, new Source(file, modified, length, definition, previous.setup));
+                    continue;
+                }
+                setup = SetupLib.create(plugin, definition);
+                configurer.accept(id, setup);
+                // Compiled now, so errors show up on reload.
+                setup.freeze();
+            } catch(IOException | InvalidConfigurationException | RuntimeException e) {
+                plugin.getLogger().log(Level.WARNING, String.format("Cannot load setup %s from %s!", id, name), e);
+                // File is not read again until it changes.
+                next.put(id, previous != null
+                        ? new Source(file, modified, length, previous.definition, previous.setup)
+                        : new Source(file, modified, length, null, null));
+                continue;
+            }
+            next.put(id, new Source(file, modified, length, definition, setup));
+            changed.add(id);
+        }
+        for(Map.Entry<String, Source> entry : sources.entrySet()) {
+            SetupLib<Map<String, Object>> setup = entry.getValue().setup;
+            if(!next.containsKey(entry.getKey()) && setup != null) {
+                // Saved progress of removed setup is not resumed anymore.
+                setup.persistTo(null);
+                changed.add(entry.getKey());
+            }
+        }
+
+        ImmutableMap.Builder<String, SetupLib<Map<String, Object>>> setups = ImmutableMap.builder();
+        next.forEach((id, source) -> {
+            if(source.setup != null) {
+                setups.put(id, source.setup);
+            }
+        });
+        this.sources = next;
+        this.setups = setups.build();
+        return changed;
+    }
+
+    /**
+     * Reloads changed definitions periodically, off the main thread.
+     *
+     * @param periodTicks Period of the checks in ticks.
+     * @return The task, cancel it to stop watching.
+     */
+    public BukkitTask watch(long periodTicks) {
+        return plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, this::reload, periodTicks, periodTicks);
+    }
+
+    private static String extension(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot != -1
+                ? name.substring(dot + 1).toLowerCase(Locale.ROOT)
+                : "";
+    }
+
+    private static final class Source {
+
+        private final File file;
+        private final long modified;
+        private final long length;
+        // Both null if the file was never loaded.
+        @Nullable
+        private final SetupDefinition definition;
+        @Nullable
+        private final SetupLib<Map<String, Object>> setup;
+
+        private Source(File file, long modified, long length, @Nullable SetupDefinition definition, @Nullable SetupLib<Map<String, Object>> setup) {
+            this.file = file;
+            this.modified = modified;
+            this.length = length;
+            this.definition = definition;
+            this.setup = setup;
+        }
+
+    }
+
+}
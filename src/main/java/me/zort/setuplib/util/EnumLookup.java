@@ -0,0 +1,57 @@
+package me.zort.setuplib.util;
+
+import com.google.common.collect.ImmutableMap;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Case-insensitive lookup of enum constants by name.
+ * <p>
+ * Map of each enum is built once on first use,
+ * so lookups neither scan the constants nor throw
+ * on unknown names like {@link Enum#valueOf(Class, String)}.
+ */
+public final class EnumLookup {
+
+    private static final ClassValue<Map<String, Enum<?>>> CONSTANTS = new ClassValue<Map<String, Enum<?>>>() {
+        @Override
+        protected Map<String, Enum<?>> computeValue(Class<?> type) {
+            Map<String, Enum<?>> constants = new HashMap<>();
+            for(Object constant : type.getEnumConstants()) {
+                Enum<?> value = (Enum<?>) constant;
+                // First one wins when constants differ only in case.
+                constants.putIfAbsent(value.name().toLowerCase(Locale.ROOT), value);
+            }
+            return ImmutableMap.copyOf(constants);
+        }
+    };
+
+    private EnumLookup() {}
+
+    /**
+     * Finds constant with provided name, ignoring case.
+     *
+     * @param type The enum.
+     * @param name Name of the constant.
+     * @return The constant or null if there is none.
+     */
+    @Nullable
+    public static <E extends Enum<E>> E get(Class<E> type, String name) {
+        return type.cast(of(type).get(name.toLowerCase(Locale.ROOT)));
+    }
+
+    /**
+     * Returns constants of the enum keyed
+     * by their lower case name.
+     *
+     * @param type The enum.
+     * @return The constants.
+     */
+    public static Map<String, Enum<?>> of(Class<?> type) {
+        return CONSTANTS.get(type);
+    }
+
+}
@@ -0,0 +1,187 @@
+package me.zort.setuplib.util;
+
+import me.zort.setuplib.ParseResult;
+import me.zort.setuplib.ValueSlots;
+
+/**
+ * Number parsers that report invalid input using
+ * {@link ParseResult} codes instead of exceptions.
+ * <p>
+ * Accepted formats are the same as in {@link Long#parseLong(String)}
+ * and {@link Double#parseDouble(String)}, except hexadecimal
+ * floating point literals.
+ */
+public final class FastParsers {
+
+    private static final double[] DOUBLE_POWERS = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+            1e21, 1e22
+    };
+    private static final float[] FLOAT_POWERS = {
+            1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+    // Largest mantissa that is exactly representable.
+    private static final long DOUBLE_EXACT = 1L << 53;
+    private static final long FLOAT_EXACT = 1L << 24;
+
+    private FastParsers() {
+    }
+
+    /**
+     * Parses decimal integer and stores it into primitive slot.
+     *
+     * @param s The input.
+     * @param min Minimal accepted value.
+     * @param max Maximal accepted value.
+     * @param slots Slots to store value into.
+     * @param index Index of the slot.
+     * @return Result code.
+     */
+    public static ParseResult parseLong(String s, long min, long max, ValueSlots slots, int index) {
+        int len = s.length();
+        if(len == 0) {
+            return ParseResult.INVALID_FORMAT;
+        }
+        int i = 0;
+        boolean negative = false;
+        char first = s.charAt(0);
+        if(first == '-' || first == '+') {
+            negative = first == '-';
+            if(++i == len) {
+                return ParseResult.INVALID_FORMAT;
+            }
+        }
+        // Accumulating negatively, so Long.MIN_VALUE fits.
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multMin = limit / 10;
+        long result = 0;
+        boolean overflow = false;
+        for(; i < len; i++) {
+            int digit = Character.digit(s.charAt(i), 10);
+            if(digit < 0) {
+                return ParseResult.INVALID_FORMAT;
+            }
+            if(overflow || result < multMin || (result *= 10) < limit + digit) {
+                // Keep scanning, format errors take precedence.
+                overflow = true;
+                continue;
+            }
+            result -= digit;
+        }
+        if(overflow) {
+            return ParseResult.OUT_OF_RANGE;
+        }
+        long value = negative ? result : -result;
+        if(value < min || value > max) {
+            return ParseResult.OUT_OF_RANGE;
+        }
+        slots.setLong(index, value);
+        return ParseResult.SUCCESS;
+    }
+
+    public static ParseResult parseDouble(String s, ValueSlots slots, int index) {
+        return parseFloating(s, false, slots, index);
+    }
+
+    public static ParseResult parseFloat(String s, ValueSlots slots, int index) {
+        return parseFloating(s, true, slots, index);
+    }
+
+    private static ParseResult parseFloating(String s, boolean single, ValueSlots slots, int index) {
+        int start = 0;
+        int end = s.length();
+        // Same whitespace trimming as in Double#parseDouble.
+        while(start < end && s.charAt(start) <= ' ') {
+            start++;
+        }
+        while(end > start && s.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if(start == end) {
+            return ParseResult.INVALID_FORMAT;
+        }
+
+        int i = start;
+        boolean negative = false;
+        char c = s.charAt(i);
+        if(c == '-' || c == '+') {
+            negative = c == '-';
+            i++;
+        }
+        if(s.startsWith("NaN", i) && i + 3 == end) {
+            slots.setDouble(index, Double.NaN);
+            return ParseResult.SUCCESS;
+        }
+        if(s.startsWith("Infinity", i) && i + 8 == end) {
+            slots.setDouble(index, negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY);
+            return ParseResult.SUCCESS;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean exact = true;
+        boolean dot = false;
+        boolean exponent = false;
+        for(; i < end; i++) {
+            c = s.charAt(i);
+            if(c >= '0' && c <= '9') {
+                if(mantissa > (Long.MAX_VALUE - 9) / 10) {
+                    exact = false;
+                } else {
+                    mantissa = mantissa * 10 + (c - '0');
+                }
+                digits++;
+                if(dot) {
+                    fractionDigits++;
+                }
+            } else if(c == '.' && !dot) {
+                dot = true;
+            } else {
+                break;
+            }
+        }
+        if(digits == 0) {
+            return ParseResult.INVALID_FORMAT;
+        }
+        if(i < end && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            exponent = true;
+            i++;
+            if(i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+                i++;
+            }
+            int exponentStart = i;
+            while(i < end && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+                i++;
+            }
+            if(i == exponentStart) {
+                return ParseResult.INVALID_FORMAT;
+            }
+        }
+        if(i < end && "fFdD".indexOf(s.charAt(i)) != -1) {
+            i++;
+        }
+        if(i != end) {
+            return ParseResult.INVALID_FORMAT;
+        }
+
+        double value;
+        if(exact && !exponent && !single && mantissa <= DOUBLE_EXACT && fractionDigits < DOUBLE_POWERS.length) {
+            // Both operands are exact, so the division is correctly rounded.
+            value = mantissa / DOUBLE_POWERS[fractionDigits];
+        } else if(exact && !exponent && single && mantissa <= FLOAT_EXACT && fractionDigits < FLOAT_POWERS.length) {
+            value = mantissa / FLOAT_POWERS[fractionDigits];
+        } else {
+            // Input is already validated, so this does not throw.
+            value = single
+                    ? Float.parseFloat(s)
+                    : Double.parseDouble(s);
+            slots.setDouble(index, value);
+            return ParseResult.SUCCESS;
+        }
+        slots.setDouble(index, negative ? -value : value);
+        return ParseResult.SUCCESS;
+    }
+
+}
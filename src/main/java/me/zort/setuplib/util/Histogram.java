@@ -0,0 +1,131 @@
+package me.zort.setuplib.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative values.
+ * <p>
+ * Values are counted in power of two buckets split into
+ * eight linear sub-buckets, so percentiles are off by at
+ * most 12.5 percent, while recording costs only a few
+ * atomic increments.
+ */
+public final class Histogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_COUNT;
+
+    private final AtomicLongArray counts;
+    private final LongAdder sum;
+    private final LongAccumulator max;
+
+    public Histogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.sum = new LongAdder();
+        this.max = new LongAccumulator(Math::max, 0);
+    }
+
+    public void record(long value) {
+        if(value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(index(value));
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Takes snapshot of this histogram. Values recorded
+     * concurrently may or may not be included.
+     *
+     * @return The snapshot.
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, sum.sum(), max.get());
+    }
+
+    private static int index(long value) {
+        if(value < SUB_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    private static long upperBound(int index) {
+        if(index < SUB_COUNT) {
+            return index;
+        }
+        int exponent = index / SUB_COUNT + SUB_BITS - 1;
+        int sub = index % SUB_COUNT;
+        long bound = ((long) (SUB_COUNT + sub + 1) << (exponent - SUB_BITS)) - 1;
+        return bound < 0 ? Long.MAX_VALUE : bound;
+    }
+
+    /**
+     * Immutable state of the histogram.
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count > 0 ? (double) sum / count : 0;
+        }
+
+        /**
+         * Returns value at provided percentile.
+         *
+         * @param percentile The percentile, from 0 to 100.
+         * @return Upper bound of bucket containing the value.
+         */
+        public long getPercentile(double percentile) {
+            if(count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(count * Math.min(Math.max(percentile, 0), 100) / 100);
+            long seen = 0;
+            for(int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if(seen >= Math.max(rank, 1)) {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+    }
+
+}
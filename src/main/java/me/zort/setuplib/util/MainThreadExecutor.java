@@ -0,0 +1,92 @@
+package me.zort.setuplib.util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Executor running tasks on the server main thread.
+ * <p>
+ * Tasks submitted from other threads are queued and
+ * drained together by one scheduled task, so a burst of
+ * tasks costs only one Bukkit task per tick.
+ */
+public final class MainThreadExecutor implements Executor {
+
+    private final Supplier<Plugin> plugin;
+    private final Queue<Runnable> queue;
+    private final AtomicBoolean scheduled;
+
+    /**
+     * Constructs new executor.
+     *
+     * @param plugin Supplier of plugin to schedule drain tasks with.
+     */
+    public MainThreadExecutor(Supplier<Plugin> plugin) {
+        this.plugin = plugin;
+        this.queue = new ConcurrentLinkedQueue<>();
+        this.scheduled = new AtomicBoolean(false);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if(Bukkit.isPrimaryThread()) {
+            run(task);
+            return;
+        }
+        queue.add(task);
+        schedule();
+    }
+
+    /**
+     * Schedules drain of tasks queued while there was
+     * no plugin to schedule with.
+     */
+    public void resume() {
+        if(!queue.isEmpty()) {
+            schedule();
+        }
+    }
+
+    /**
+     * Runs all queued tasks on current thread. This is used
+     * when the plugin owning the drain task is disabled.
+     */
+    public void flush() {
+        drain();
+    }
+
+    private void schedule() {
+        if(scheduled.compareAndSet(false, true)) {
+            Plugin owner = plugin.get();
+            if(owner == null || !owner.isEnabled()) {
+                // Nothing to schedule with, tasks stay queued until resumed.
+                scheduled.set(false);
+                return;
+            }
+            Bukkit.getScheduler().runTask(owner, this::drain);
+        }
+    }
+
+    private void drain() {
+        scheduled.set(false);
+        Runnable task;
+        while((task = queue.poll()) != null) {
+            run(task);
+        }
+    }
+
+    private static void run(Runnable task) {
+        try {
+            task.run();
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+package me.zort.setuplib.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free meter of events per second over
+ * a sliding window of whole seconds.
+ * <p>
+ * Event marked exactly when its bucket is being
+ * recycled may be lost, so the rate is approximate.
+ */
+public final class RateMeter {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final int window;
+    private final AtomicLongArray counts;
+    private final AtomicLongArray seconds;
+
+    /**
+     * Constructs new meter.
+     *
+     * @param window Length of the window in seconds.
+     */
+    public RateMeter(int window) {
+        this.window = window;
+        // One more bucket for the current, incomplete second.
+        this.counts = new AtomicLongArray(window + 1);
+        this.seconds = new AtomicLongArray(window + 1);
+    }
+
+    public void mark() {
+        long second = Math.floorDiv(System.nanoTime(), SECOND);
+        int index = (int) Math.floorMod(second, (long) counts.length());
+        long stamp = seconds.get(index);
+        if(stamp != second && seconds.compareAndSet(index, stamp, second)) {
+            counts.set(index, 0);
+        }
+        counts.incrementAndGet(index);
+    }
+
+    /**
+     * Returns average count of events per second
+     * in the last complete seconds of the window.
+     *
+     * @return The rate.
+     */
+    public double getRate() {
+        long current = Math.floorDiv(System.nanoTime(), SECOND);
+        long total = 0;
+        for(int i = 0; i < counts.length(); i++) {
+            long second = seconds.get(i);
+            if(second < current && second >= current - window) {
+                total += counts.get(i);
+            }
+        }
+        return (double) total / window;
+    }
+
+}
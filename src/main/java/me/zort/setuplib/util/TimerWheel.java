@@ -0,0 +1,258 @@
+package me.zort.setuplib.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Hierarchical hashed timer wheel.
+ * <p>
+ * Timeouts can be scheduled and cancelled from any thread
+ * without locking, while {@link #advance()} is expected to be
+ * called periodically. Advance that overlaps another one is
+ * skipped, so the wheel is only ever moved by one thread, and
+ * expired tasks are handed to the executor, so slow task does
+ * not hold the wheel. Scheduling and cancelling is O(1) and
+ * the wheel does not keep any thread on its own.
+ */
+public final class TimerWheel {
+
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 5;
+    // Longest delay that fits into the wheels, longer ones are re-added on expiry.
+    private static final long MAX_SPAN = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+    private final long tickNanos;
+    private final long startNanos;
+    private final Timeout[][] wheels;
+    private final Queue<Timeout> pending;
+    private final Queue<Timeout> cancelled;
+    private final Executor executor;
+    private final AtomicBoolean advancing;
+    // Next tick to be processed.
+    private long nextTick;
+
+    /**
+     * Constructs new wheel.
+     *
+     * @param tick Resolution of the wheel.
+     * @param unit Unit of the resolution.
+     * @param executor Executor of expired tasks.
+     */
+    public TimerWheel(long tick, TimeUnit unit, Executor executor) {
+        this.tickNanos = unit.toNanos(tick);
+        this.executor = executor;
+        this.advancing = new AtomicBoolean(false);
+        this.startNanos = System.nanoTime();
+        this.wheels = new Timeout[LEVELS][WHEEL_SIZE];
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.cancelled = new ConcurrentLinkedQueue<>();
+        this.nextTick = 0;
+    }
+
+    /**
+     * Schedules task to be run after provided delay.
+     *
+     * @param task The task.
+     * @param delay The delay.
+     * @param unit Unit of the delay.
+     * @return Handle for cancelling the task.
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        long elapsed = System.nanoTime() - startNanos + unit.toNanos(delay);
+        // Rounding up, task must never run sooner.
+        long deadline = (elapsed + tickNanos - 1) / tickNanos;
+        Timeout timeout = new Timeout(this, task, deadline);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Moves the wheel to current time and runs all expired
+     * tasks. Does nothing if the wheel is being advanced
+     * by another thread, next call catches up.
+     */
+    public void advance() {
+        if(!advancing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            advanceTicks();
+        } finally {
+            advancing.set(false);
+        }
+    }
+
+    private void advanceTicks() {
+        long now = (System.nanoTime() - startNanos) / tickNanos;
+        removeCancelled();
+        transferPending();
+        while(nextTick <= now) {
+            int index = (int) (nextTick & WHEEL_MASK);
+            if(index == 0) {
+                cascade(1);
+            }
+            Timeout timeout = wheels[0][index];
+            wheels[0][index] = null;
+            long tick = nextTick++;
+            while(timeout != null) {
+                Timeout next = timeout.next;
+                timeout.prev = null;
+                timeout.next = null;
+                timeout.level = -1;
+                if(timeout.deadline > tick) {
+                    // Deadline was out of range of the wheels.
+                    add(timeout);
+                } else {
+                    timeout.expire();
+                }
+                timeout = next;
+            }
+        }
+    }
+
+    private void cascade(int level) {
+        if(level >= LEVELS) {
+            return;
+        }
+        int index = (int) ((nextTick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+        if(index == 0) {
+            cascade(level + 1);
+        }
+        Timeout timeout = wheels[level][index];
+        wheels[level][index] = null;
+        while(timeout != null) {
+            Timeout next = timeout.next;
+            timeout.prev = null;
+            timeout.next = null;
+            add(timeout);
+            timeout = next;
+        }
+    }
+
+    private void transferPending() {
+        Timeout timeout;
+        while((timeout = pending.poll()) != null) {
+            if(timeout.state == Timeout.ST_INIT) {
+                add(timeout);
+            }
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while((timeout = cancelled.poll()) != null) {
+            if(timeout.level == -1) {
+                // Still pending or already removed.
+                continue;
+            }
+            Timeout[] wheel = wheels[timeout.level];
+            if(timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else if(wheel[timeout.slot] == timeout) {
+                wheel[timeout.slot] = timeout.next;
+            }
+            if(timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.level = -1;
+        }
+    }
+
+    private void add(Timeout timeout) {
+        long deadline = Math.max(timeout.deadline, nextTick);
+        long delta = Math.min(deadline - nextTick, MAX_SPAN);
+        deadline = nextTick + delta;
+
+        int level = 0;
+        while(level < LEVELS - 1 && delta >= 1L << (WHEEL_BITS * (level + 1))) {
+            level++;
+        }
+        int slot = (int) ((deadline >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+        Timeout head = wheels[level][slot];
+        timeout.level = level;
+        timeout.slot = slot;
+        timeout.next = head;
+        if(head != null) {
+            head.prev = timeout;
+        }
+        wheels[level][slot] = timeout;
+    }
+
+    /**
+     * Handle of scheduled task.
+     */
+    public static final class Timeout {
+
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE = AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final TimerWheel wheel;
+        private final Runnable task;
+        private final long deadline;
+        private volatile int state;
+
+        // Accessed only while advancing.
+        private Timeout prev;
+        private Timeout next;
+        private int level = -1;
+        private int slot;
+
+        private Timeout(TimerWheel wheel, Runnable task, long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+            this.state = ST_INIT;
+        }
+
+        /**
+         * Cancels this task, if not run yet.
+         *
+         * @return True if the task was cancelled by this call.
+         */
+        public boolean cancel() {
+            if(!STATE.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            wheel.cancelled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state == ST_EXPIRED;
+        }
+
+        private void expire() {
+            if(!STATE.compareAndSet(this, ST_INIT, ST_EXPIRED)) {
+                return;
+            }
+            try {
+                wheel.executor.execute(() -> {
+                    try {
+                        task.run();
+                    } catch(Exception e) {
+                        e.printStackTrace();
+                    }
+                });
+            } catch(RejectedExecutionException e) {
+                e.printStackTrace();
+            }
+        }
+
+    }
+
+}
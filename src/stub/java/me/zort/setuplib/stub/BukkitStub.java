@@ -0,0 +1,159 @@
+package me.zort.setuplib.stub;
+
+import com.google.common.base.Defaults;
+import net.md_5.bungee.api.chat.BaseComponent;
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Lightweight in-process server stub.
+ * <p>
+ * Only methods SetupLib actually calls are implemented,
+ * everything else returns default values. Scheduled tasks
+ * are run inline, repeating tasks are never run.
+ */
+public final class BukkitStub {
+
+    private static final Logger LOGGER = Logger.getLogger("BukkitStub");
+    private static final LongAdder SENT_MESSAGES = new LongAdder();
+    private static final AtomicInteger TASK_IDS = new AtomicInteger();
+    private static Server server;
+
+    private BukkitStub() {
+    }
+
+    /**
+     * Installs the stub server, if not installed yet.
+     *
+     * @return The server.
+     */
+    public static synchronized Server install() {
+        if(server == null) {
+            PluginManager pluginManager = proxy(PluginManager.class, (proxy, method, args) -> defaultValue(method));
+            BukkitScheduler scheduler = proxy(BukkitScheduler.class, (proxy, method, args) -> {
+                if(method.getName().equals("runTask") && args[1] instanceof Runnable) {
+                    ((Runnable) args[1]).run();
+                }
+                return method.getReturnType() == BukkitTask.class
+                        ? task()
+                        : defaultValue(method);
+            });
+            server = proxy(Server.class, (proxy, method, args) -> {
+                switch(method.getName()) {
+                    case "getPluginManager":
+                        return pluginManager;
+                    case "getScheduler":
+                        return scheduler;
+                    case "isPrimaryThread":
+                        return false;
+                    case "getLogger":
+                        return LOGGER;
+                    case "getName":
+                        return "BukkitStub";
+                    default:
+                        return defaultValue(method);
+                }
+            });
+            Bukkit.setServer(server);
+        }
+        return server;
+    }
+
+    public static Plugin plugin(String name) {
+        Server server = install();
+        return proxy(Plugin.class, (proxy, method, args) -> {
+            switch(method.getName()) {
+                case "getName":
+                    return name;
+                case "isEnabled":
+                    return true;
+                case "getServer":
+                    return server;
+                case "getLogger":
+                    return LOGGER;
+                default:
+                    return objectMethod(proxy, method, args);
+            }
+        });
+    }
+
+    public static Player player(UUID uuid) {
+        String name = uuid.toString().substring(0, 16);
+        Player.Spigot spigot = new Player.Spigot() {
+            @Override
+            public void sendMessage(BaseComponent... components) {
+                SENT_MESSAGES.increment();
+            }
+        };
+        return proxy(Player.class, (proxy, method, args) -> {
+            switch(method.getName()) {
+                case "getUniqueId":
+                    return uuid;
+                case "getName":
+                case "getDisplayName":
+                    return name;
+                case "isOnline":
+                    return true;
+                case "sendMessage":
+                    SENT_MESSAGES.increment();
+                    return null;
+                case "spigot":
+                    return spigot;
+                default:
+                    return objectMethod(proxy, method, args);
+            }
+        });
+    }
+
+    /**
+     * Returns count of messages sent to all stub players.
+     *
+     * @return Count of messages.
+     */
+    public static long getSentMessages() {
+        return SENT_MESSAGES.sum();
+    }
+
+    private static BukkitTask task() {
+        int id = TASK_IDS.incrementAndGet();
+        return proxy(BukkitTask.class, (proxy, method, args) -> method.getName().equals("getTaskId")
+                ? id
+                : objectMethod(proxy, method, args));
+    }
+
+    private static Object objectMethod(Object proxy, Method method, Object[] args) {
+        switch(method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "Stub@" + Integer.toHexString(System.identityHashCode(proxy));
+            default:
+                return defaultValue(method);
+        }
+    }
+
+    private static Object defaultValue(Method method) {
+        return Defaults.defaultValue(method.getReturnType());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(BukkitStub.class.getClassLoader(), new Class<?>[] {type}, handler);
+    }
+
+}